@@ -0,0 +1,50 @@
+#!/usr/bin/env bash
+# Time to first request, and optionally p99 latency, of one way of running the service.
+#
+#   scripts/startup-benchmark.sh [label] [java options and program arguments...]
+#
+#   scripts/startup-benchmark.sh baseline
+#   scripts/startup-benchmark.sh virtual-threads --spring.threads.virtual.enabled=true
+#   scripts/startup-benchmark.sh fast-startup --spring.profiles.active=fast-startup
+#   scripts/startup-benchmark.sh aot -Dspring.aot.enabled=true          (jar built with -Paot)
+#   scripts/startup-benchmark.sh cds -XX:SharedArchiveFile=application.jsa
+#
+# Java options (-D..., -XX:...) go before -jar, everything else after it.
+# When 'hey' (https://github.com/rakyll/hey) is on the PATH, the script then sends
+# REQUESTS requests with CONCURRENCY clients and prints the latency distribution.
+# Admission control is switched off: every request comes from 127.0.0.1, whose rate limit
+# would otherwise answer most of them 429 and the distribution would measure rejections.
+set -euo pipefail
+
+LABEL="${1:-baseline}"
+shift || true
+JAR="${JAR:-$(ls target/*.jar | grep -v plain | head -n 1)}"
+PORT="${PORT:-18080}"
+REQUESTS="${REQUESTS:-20000}"
+CONCURRENCY="${CONCURRENCY:-200}"
+BODY='{"bookItemList":[{"title":"Clean Code","quantity":2},{"title":"The Clean Coder","quantity":2},{"title":"Clean Architecture","quantity":2},{"title":"TDD","quantity":1},{"title":"Legacy Code","quantity":1}]}'
+
+JVM_OPTS=()
+APP_ARGS=()
+for arg in "$@"; do
+  case "$arg" in
+    -D*|-X*) JVM_OPTS+=("$arg") ;;
+    *) APP_ARGS+=("$arg") ;;
+  esac
+done
+
+start=$(date +%s%N)
+java "${JVM_OPTS[@]}" -jar "$JAR" --server.port="$PORT" --book-discount.admission.enabled=false "${APP_ARGS[@]}" > "target/startup-$LABEL.log" 2>&1 &
+pid=$!
+trap 'kill $pid 2>/dev/null || true' EXIT
+
+until curl -sf -o /dev/null -H 'Content-Type: application/json' -d "$BODY" "http://localhost:$PORT/api/price/calculate"; do
+  kill -0 $pid 2>/dev/null || { echo "$LABEL: application exited, see target/startup-$LABEL.log"; exit 1; }
+  sleep 0.05
+done
+echo "$LABEL: first request answered after $(( ($(date +%s%N) - start) / 1000000 )) ms"
+
+if command -v hey > /dev/null; then
+  hey -n "$REQUESTS" -c "$CONCURRENCY" -m POST -T application/json -d "$BODY" \
+      "http://localhost:$PORT/api/price/calculate" | sed -n '/Latency distribution/,/^$/p'
+fi
@@ -0,0 +1,20 @@
+package com.bnpp.kata.bookdiscount.app.benchmark;
+
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+
+final class BenchmarkProperties {
+
+    private BenchmarkProperties() {
+    }
+
+    /**
+     * Default properties with the shape cache and the precomputed lookup table switched on or off.
+     */
+    static PricingProperties with(boolean shapeCache, boolean lookupTable) {
+        PricingProperties defaults = PricingProperties.defaults();
+        return defaults
+                .withCache(new PricingProperties.Cache(shapeCache, defaults.cache().maximumSize()))
+                .withLookup(new PricingProperties.Lookup(lookupTable, defaults.lookup().maxTitles(),
+                        defaults.lookup().maxCopies()));
+    }
+}
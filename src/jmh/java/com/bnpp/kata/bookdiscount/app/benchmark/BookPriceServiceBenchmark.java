@@ -0,0 +1,99 @@
+package com.bnpp.kata.bookdiscount.app.benchmark;
+
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.service.BookPriceService;
+import com.bnpp.kata.bookdiscount.app.service.PricingMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link BookPriceService#calculatePrice} over a matrix of basket shapes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookPriceServiceBenchmark {
+
+    private static final String[] SERIES = {
+            "Clean Code", "The Clean Coder", "Clean Architecture", "TDD", "Legacy Code"
+    };
+
+    @Param({"1-title", "2-titles", "3-titles", "4-titles", "5-titles",
+            "kata-320", "5-titles-x100", "5-titles-x10000", "duplicate-case-titles"})
+    public String basket;
+
+    @Param({"true", "false"})
+    public boolean shapeCache;
+
+    @Param({"true", "false"})
+    public boolean lookupTable;
+
+    private BookPriceService service;
+    private List<BookItem> items;
+
+    @Setup
+    public void setup() {
+        service = new BookPriceService(BenchmarkProperties.with(shapeCache, lookupTable), PricingMetrics.noop());
+        items = switch (basket) {
+            case "kata-320" -> series(2, 2, 2, 1, 1);
+            case "5-titles-x100" -> series(100, 90, 80, 70, 60);
+            case "5-titles-x10000" -> series(10_000, 9_000, 8_000, 7_000, 6_000);
+            case "duplicate-case-titles" -> duplicateCaseTitles(200);
+            default -> series(ones(Integer.parseInt(basket.substring(0, 1))));
+        };
+    }
+
+    @Benchmark
+    public double calculatePrice() {
+        return service.calculatePrice(items);
+    }
+
+    private static int[] ones(int titles) {
+        int[] quantities = new int[titles];
+        Arrays.fill(quantities, 1);
+        return quantities;
+    }
+
+    private static List<BookItem> series(int... quantities) {
+        List<BookItem> list = new ArrayList<>();
+        for (int i = 0; i < quantities.length; i++) {
+            list.add(new BookItem(SERIES[i], quantities[i]));
+        }
+        return list;
+    }
+
+    /**
+     * 'lines' line items over the five titles, in varying case and padding,
+     * to weigh the normalization and merge stage.
+     */
+    private static List<BookItem> duplicateCaseTitles(int lines) {
+        List<BookItem> list = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            String title = SERIES[i % SERIES.length];
+            String variant = switch (i % 3) {
+                case 0 -> title;
+                case 1 -> title.toUpperCase();
+                default -> "  " + title.toLowerCase() + " ";
+            };
+            list.add(new BookItem(variant, 1 + i % 2));
+        }
+        return list;
+    }
+}
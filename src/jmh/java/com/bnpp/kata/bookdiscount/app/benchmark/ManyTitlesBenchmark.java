@@ -0,0 +1,73 @@
+package com.bnpp.kata.bookdiscount.app.benchmark;
+
+import com.bnpp.kata.bookdiscount.app.service.engine.BasketShape;
+import com.bnpp.kata.bookdiscount.app.service.engine.DiscountTable;
+import com.bnpp.kata.bookdiscount.app.service.engine.GroupHistogramEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.HeterogeneousPriceEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.PricingEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.PrimitivePriceEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The engines on baskets of many distinct titles, every other title bought twice, the others once.
+ * "uniform" baskets go through the group histogram (kata table) or the DP (seven-title table);
+ * "two-prices" baskets, where every third title costs 40.0 and the others 20.0, through the mixed-price DP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManyTitlesBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int titles;
+
+    @Param({"uniform", "two-prices"})
+    public String prices;
+
+    @Param({"kata", "seven"})
+    public String table;
+
+    private PricingEngine uniformEngine;
+    private HeterogeneousPriceEngine mixedEngine;
+    private BasketShape shape;
+
+    @Setup
+    public void setup() {
+        DiscountTable discountTable = new DiscountTable(20.0, "kata".equals(table) ? DiscountTable.KATA_DISCOUNTS
+                : Map.of(2, 0.05, 3, 0.10, 4, 0.20, 5, 0.25, 6, 0.30, 7, 0.35));
+        PricingEngine primitive = new PrimitivePriceEngine(discountTable);
+        uniformEngine = "kata".equals(table) ? new GroupHistogramEngine(discountTable, primitive) : primitive;
+        mixedEngine = new HeterogeneousPriceEngine(discountTable);
+        int[] counts = new int[titles];
+        double[] unitPrices = new double[titles];
+        for (int i = 0; i < titles; i++) {
+            counts[i] = i < (titles + 1) / 2 ? 2 : 1;
+            unitPrices[i] = "uniform".equals(prices) || i % 3 != 0 ? 20.0 : 40.0;
+        }
+        shape = new BasketShape(counts, unitPrices);
+    }
+
+    @Benchmark
+    public double price() {
+        return shape.hasUniformPrice()
+                ? uniformEngine.price(shape.counts(), SolveContext.NONE)
+                : mixedEngine.price(shape, SolveContext.NONE);
+    }
+}
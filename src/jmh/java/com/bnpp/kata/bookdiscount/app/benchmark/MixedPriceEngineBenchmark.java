@@ -0,0 +1,54 @@
+package com.bnpp.kata.bookdiscount.app.benchmark;
+
+import com.bnpp.kata.bookdiscount.app.service.engine.BasketShape;
+import com.bnpp.kata.bookdiscount.app.service.engine.DiscountTable;
+import com.bnpp.kata.bookdiscount.app.service.engine.HeterogeneousPriceEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The heterogeneous-price solver on baskets mixing two or three list prices.
+ * Shapes are written count:price, e.g. "2:60-2:50-1:50".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MixedPriceEngineBenchmark {
+
+    private static final DiscountTable KATA_TABLE = new DiscountTable(50.0, DiscountTable.KATA_DISCOUNTS);
+
+    @Param({"2:60-2:50-2:50-1:50-1:40", "5:60-5:60-4:50-3:50-2:40", "3:60-3:60-3:60-2:40-2:40-2:40"})
+    public String shape;
+
+    private final HeterogeneousPriceEngine engine = new HeterogeneousPriceEngine(KATA_TABLE);
+    private BasketShape basketShape;
+
+    @Setup
+    public void setup() {
+        String[] titles = shape.split("-");
+        int[] counts = Arrays.stream(titles).mapToInt(title -> Integer.parseInt(title.split(":")[0])).toArray();
+        double[] unitPrices = Arrays.stream(titles).mapToDouble(title -> Double.parseDouble(title.split(":")[1])).toArray();
+        basketShape = new BasketShape(counts, unitPrices);
+    }
+
+    @Benchmark
+    public double price() {
+        return engine.price(basketShape, SolveContext.NONE);
+    }
+}
@@ -0,0 +1,61 @@
+package com.bnpp.kata.bookdiscount.app.benchmark;
+
+import com.bnpp.kata.bookdiscount.app.service.engine.ClosedFormPriceEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.DiscountTable;
+import com.bnpp.kata.bookdiscount.app.service.engine.GroupHistogramEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.PricingEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.PrimitivePriceEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The production solvers alone, on canonical shapes, without validation or caching, each one
+ * falling back to the same engines as in the catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingEngineBenchmark {
+
+    private static final DiscountTable KATA_TABLE = new DiscountTable(50.0, DiscountTable.KATA_DISCOUNTS);
+
+    @Param({"primitive", "histogram", "closed-form"})
+    public String engine;
+
+    @Param({"2-2-2-1-1", "5-5-4-3-2", "12-10-9-7-4"})
+    public String shape;
+
+    private PricingEngine pricingEngine;
+    private int[] counts;
+
+    @Setup
+    public void setup() {
+        PricingEngine primitive = new PrimitivePriceEngine(KATA_TABLE);
+        pricingEngine = switch (engine) {
+            case "primitive" -> primitive;
+            case "histogram" -> new GroupHistogramEngine(KATA_TABLE, primitive);
+            default -> new ClosedFormPriceEngine(KATA_TABLE, new GroupHistogramEngine(KATA_TABLE, primitive));
+        };
+        counts = Arrays.stream(shape.split("-")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    @Benchmark
+    public double price() {
+        return pricingEngine.price(counts);
+    }
+}
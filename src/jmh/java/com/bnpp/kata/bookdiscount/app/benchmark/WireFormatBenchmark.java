@@ -0,0 +1,100 @@
+package com.bnpp.kata.bookdiscount.app.benchmark;
+
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.model.BookPriceResponse;
+import com.bnpp.kata.bookdiscount.app.model.UserBasketRequest;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson cost of the REST contract in each wire format: reading a {@link UserBasketRequest}
+ * and writing the {@link BookPriceResponse}, with or without the echoed basket.
+ * Payload sizes are reported next to the timings, as the payloadBytes and operations secondary
+ * results: their ratio is the size of the request read or of the response written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"2", "5", "100"})
+    public int lineItems;
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    @Param({"true", "false"})
+    public boolean echo;
+
+    private ObjectMapper objectMapper;
+    private byte[] requestBytes;
+    private BookPriceResponse response;
+
+    @Setup
+    public void setup() {
+        objectMapper = "cbor".equals(format) ? CBORMapper.builder().build() : JsonMapper.builder().build();
+        List<BookItem> items = new ArrayList<>();
+        for (int i = 0; i < lineItems; i++) {
+            items.add(new BookItem("Title " + (i % 5), 1 + i % 3));
+        }
+        UserBasketRequest request = new UserBasketRequest(items);
+        requestBytes = objectMapper.writeValueAsBytes(request);
+        response = echo ? BookPriceResponse.of(request, 320.0, 32_000, false)
+                : BookPriceResponse.priceOnly(320.0, 32_000, false);
+    }
+
+    @Benchmark
+    public UserBasketRequest readRequest(Payload payload) {
+        payload.count(requestBytes.length);
+        return objectMapper.readValue(requestBytes, UserBasketRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeResponse(Payload payload) {
+        byte[] bytes = objectMapper.writeValueAsBytes(response);
+        payload.count(bytes.length);
+        return bytes;
+    }
+
+    /**
+     * Bytes read or written and operations run, summed by JMH over the measurement iterations.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Payload {
+        public long payloadBytes;
+        public long operations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            payloadBytes = 0;
+            operations = 0;
+        }
+
+        void count(int bytes) {
+            payloadBytes += bytes;
+            operations++;
+        }
+    }
+}
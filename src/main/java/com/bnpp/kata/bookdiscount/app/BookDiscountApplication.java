@@ -1,13 +1,31 @@
 package com.bnpp.kata.bookdiscount.app;
 
+import com.bnpp.kata.bookdiscount.app.cli.BulkPricingCommand;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class BookDiscountApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(BookDiscountApplication.class, args);
+		SpringApplication application = new SpringApplication(BookDiscountApplication.class);
+		// Decided on the resolved environment (arguments, environment variables, property files),
+		// before the application context, and with it the web server, is created.
+		application.addListeners((ApplicationListener<ApplicationEnvironmentPreparedEvent>) event -> {
+			if (BulkPricingCommand.requested(event.getEnvironment())) {
+				event.getSpringApplication().setWebApplicationType(WebApplicationType.NONE);
+			}
+		});
+		ConfigurableApplicationContext context = application.run(args);
+		if (BulkPricingCommand.requested(context.getEnvironment())) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
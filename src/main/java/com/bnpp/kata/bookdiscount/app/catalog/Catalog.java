@@ -0,0 +1,284 @@
+package com.bnpp.kata.bookdiscount.app.catalog;
+
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.service.engine.BasketShape;
+import com.bnpp.kata.bookdiscount.app.service.engine.CachingPricingEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.ClosedFormPriceEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.DiscountTable;
+import com.bnpp.kata.bookdiscount.app.service.engine.GreedyPriceEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.GroupHistogramEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.HeterogeneousPriceEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.LookupTablePriceEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.MinorUnits;
+import com.bnpp.kata.bookdiscount.app.service.engine.PricingEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.PrimitivePriceEngine;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.DoubleStream;
+
+/**
+ * One immutable, compiled version of the catalog.
+ * <p>
+ * Every distinct unit price of the catalog gets its own engine chain built on a {@link DiscountTable}
+ * for that price, all memoized in one shape cache, so baskets whose titles all cost the same
+ * are priced exactly as before. Baskets mixing prices go to the {@link HeterogeneousPriceEngine}.
+ * <p>
+ * Request titles are priced by dictionary ID from a {@link #unitPrices price column}, resolved
+ * once per title dictionary table, so pricing a request looks up no string and unboxes no price.
+ */
+public final class Catalog {
+
+    private final long version;
+    private final DiscountTable discountTable;
+    private final Map<String, Double> titlePrices;
+    private final double[] pricePoints;
+    private final PricingEngine[] uniformEngines;
+    private final boolean[] closedForm;
+    private final CachingPricingEngine shapeCache;
+    private final HeterogeneousPriceEngine mixedPriceEngine;
+    private final LookupTablePriceEngine lookupTable;
+    private final GreedyPriceEngine approximation;
+    private final PricingProperties.Budget budget;
+    private final boolean coalescing;
+    private final AtomicReference<PriceColumn> priceColumn = new AtomicReference<>();
+
+    private Catalog(long version, DiscountTable discountTable, Map<String, Double> titlePrices,
+                    PricingProperties properties) {
+        PricingProperties.Cache cache = properties.cache();
+        PricingProperties.Lookup lookup = properties.lookup();
+        this.version = version;
+        this.discountTable = discountTable;
+        this.titlePrices = titlePrices;
+        this.pricePoints = DoubleStream.concat(
+                        DoubleStream.of(discountTable.bookPrice()),
+                        titlePrices.values().stream().mapToDouble(Double::doubleValue))
+                .distinct()
+                .sorted()
+                .toArray();
+        this.uniformEngines = new PricingEngine[pricePoints.length];
+        this.closedForm = new boolean[pricePoints.length];
+        CachingPricingEngine shapeCache = null;
+        LookupTablePriceEngine defaultPriceLookup = null;
+        for (int point = 0; point < pricePoints.length; point++) {
+            DiscountTable table = discountTable.withBookPrice(pricePoints[point]);
+            PricingEngine solver = new GroupHistogramEngine(table, new PrimitivePriceEngine(table));
+            PricingEngine general = solver;
+            if (cache.enabled()) {
+                // One cache for every price point, so 'maximumSize' bounds them all together.
+                shapeCache = shapeCache == null
+                        ? new CachingPricingEngine(solver, cache.maximumSize())
+                        : shapeCache.sharing(solver, point);
+                general = shapeCache;
+            }
+            closedForm[point] = table.hasKataDiscounts();
+            uniformEngines[point] = uniformChain(table, general);
+            if (lookup.enabled() && pricePoints[point] == discountTable.bookPrice()) {
+                // Filled through the uncached chain so the shape cache keeps its room for larger shapes.
+                defaultPriceLookup = new LookupTablePriceEngine(uniformChain(table, solver), uniformEngines[point],
+                        lookup.maxTitles(), lookup.maxCopies());
+                uniformEngines[point] = defaultPriceLookup;
+            }
+        }
+        this.shapeCache = shapeCache;
+        this.lookupTable = defaultPriceLookup;
+        this.mixedPriceEngine = new HeterogeneousPriceEngine(discountTable);
+        this.approximation = new GreedyPriceEngine(discountTable);
+        this.budget = properties.budget();
+        this.coalescing = properties.coalescing().enabled();
+    }
+
+    private static PricingEngine uniformChain(DiscountTable table, PricingEngine general) {
+        return table.hasKataDiscounts() ? new ClosedFormPriceEngine(table, general) : general;
+    }
+
+    /**
+     * Validates a catalog definition and compiles it into engines.
+     *
+     * @throws IllegalArgumentException when the definition is incomplete or inconsistent
+     */
+    public static Catalog compile(CatalogDefinition definition, PricingProperties properties, long version) {
+        MinorUnits minorUnits = properties.money().minorUnits();
+        Double bookPrice = definition.bookPrice();
+        if (bookPrice == null || !isValidPrice(bookPrice)) {
+            throw new IllegalArgumentException("Catalog bookPrice must be a positive amount");
+        }
+        if (!minorUnits.isExact(bookPrice)) {
+            throw new IllegalArgumentException("Catalog bookPrice must have at most %d decimals".formatted(minorUnits.scale()));
+        }
+        if (definition.discounts() == null) {
+            throw new IllegalArgumentException("Catalog discounts must not be null");
+        }
+        definition.discounts().forEach((groupSize, discount) -> {
+            if (groupSize == null || groupSize < 1) {
+                throw new IllegalArgumentException("Catalog discount group sizes must be at least 1");
+            }
+            if (discount == null || !(discount >= 0.0 && discount < 1.0)) {
+                throw new IllegalArgumentException(
+                        "Catalog discount for %d titles must be in [0, 1)".formatted(groupSize));
+            }
+            if (BigDecimal.valueOf(discount).stripTrailingZeros().scale() > 6) {
+                throw new IllegalArgumentException(
+                        "Catalog discount for %d titles must have at most 6 decimals".formatted(groupSize));
+            }
+        });
+
+        Map<String, Double> titlePrices = new HashMap<>();
+        if (definition.titlePrices() != null) {
+            definition.titlePrices().forEach((title, price) -> {
+                if (title == null || title.isBlank()) {
+                    throw new IllegalArgumentException("Catalog titles must not be blank");
+                }
+                if (price == null || !isValidPrice(price)) {
+                    throw new IllegalArgumentException("Catalog price of '%s' must be a positive amount".formatted(title));
+                }
+                if (!minorUnits.isExact(price)) {
+                    throw new IllegalArgumentException("Catalog price of '%s' must have at most %d decimals"
+                            .formatted(title, minorUnits.scale()));
+                }
+                if (titlePrices.put(TitleDictionary.normalize(title), price) != null) {
+                    throw new IllegalArgumentException("Catalog title '%s' is listed more than once".formatted(title));
+                }
+            });
+        }
+        return new Catalog(version, new DiscountTable(bookPrice, definition.discounts(), minorUnits),
+                Map.copyOf(titlePrices), properties);
+    }
+
+    private static boolean isValidPrice(double price) {
+        return price > 0.0 && Double.isFinite(price);
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Discount table at the default book price.
+     */
+    public DiscountTable discountTable() {
+        return discountTable;
+    }
+
+    /**
+     * Exact amount of minor units of a price computed under this catalog.
+     */
+    public long minorUnits(double price) {
+        return discountTable.minorUnits().toMinor(price);
+    }
+
+    /**
+     * Unit price of a title, given in its {@link TitleDictionary#normalize normalized} form.
+     */
+    public double unitPrice(String normalizedTitle) {
+        Double price = titlePrices.get(normalizedTitle);
+        return price != null ? price : discountTable.bookPrice();
+    }
+
+    /**
+     * Unit prices of this version indexed by the title IDs of a dictionary table. Built on first use
+     * for each table by interning the catalog's titles into it, so every request title sharing an ID
+     * with a catalog title gets its price and every other ID the default book price. A catalog title
+     * the table is too full to intern cannot match any ID of that table, which takes no more titles.
+     */
+    public double[] unitPrices(TitleDictionary.Table titles) {
+        PriceColumn column = priceColumn.get();
+        if (column == null || column.titles() != titles) {
+            double[] prices = new double[titles.maximumSize()];
+            Arrays.fill(prices, discountTable.bookPrice());
+            titlePrices.forEach((title, price) -> {
+                int id = titles.idOf(title);
+                if (id >= 0) {
+                    prices[id] = price;
+                }
+            });
+            // Racing builders produce equal columns; requests still on a replaced table rebuild theirs.
+            column = new PriceColumn(titles, prices);
+            priceColumn.set(column);
+        }
+        return column.prices();
+    }
+
+    /**
+     * Optimal price of a basket shape under this catalog's discounts.
+     */
+    public double price(BasketShape shape, SolveContext context) {
+        if (!shape.hasUniformPrice()) {
+            return mixedPriceEngine.price(shape, context);
+        }
+        double unitPrice = shape.unitPrices()[0];
+        int point = Arrays.binarySearch(pricePoints, unitPrice);
+        if (point >= 0) {
+            return uniformEngines[point].price(shape.counts(), context);
+        }
+        // Shape canonicalized against a previous catalog version: solve once, uncached.
+        DiscountTable table = discountTable.withBookPrice(unitPrice);
+        return new GroupHistogramEngine(table, new PrimitivePriceEngine(table)).price(shape.counts(), context);
+    }
+
+    /**
+     * Upper bound on the price of a basket shape, for shapes the exact engines gave up on.
+     */
+    public double approximatePrice(BasketShape shape, SolveContext context) {
+        return approximation.price(shape, context);
+    }
+
+    /**
+     * The solver budget this version was compiled with.
+     */
+    public PricingProperties.Budget budget() {
+        return budget;
+    }
+
+    /**
+     * Whether concurrent solves of this shape should wait on one another: coalescing is enabled
+     * and the shape is not {@link #constantTime priced in constant time}, where solving again
+     * costs less than the bookkeeping of waiting.
+     */
+    public boolean coalesces(BasketShape shape, SolveContext context) {
+        return coalescing && !constantTime(shape, context);
+    }
+
+    /**
+     * Whether the shape is priced in constant time: precomputed, or by the kata closed form.
+     */
+    public boolean constantTime(BasketShape shape, SolveContext context) {
+        if (!shape.hasUniformPrice()) {
+            return false;
+        }
+        int point = Arrays.binarySearch(pricePoints, shape.unitPrices()[0]);
+        if (point < 0) {
+            return false;
+        }
+        int[] counts = shape.counts();
+        boolean precomputed = lookupTable != null && !context.explains()
+                && shape.unitPrices()[0] == discountTable.bookPrice() && lookupTable.covers(counts);
+        // The closed form applies per price point: whether its table is exact depends on the unit price.
+        return precomputed || closedForm[point] && ClosedFormPriceEngine.covers(counts);
+    }
+
+    /**
+     * Hit/miss counters of the shape cache, over every price point.
+     */
+    public CacheStats shapeCacheStats() {
+        return shapeCache != null ? shapeCache.stats() : CacheStats.empty();
+    }
+
+    /**
+     * Precomputed prices at the default book price, or null when disabled.
+     */
+    public LookupTablePriceEngine lookupTable() {
+        return lookupTable;
+    }
+
+    public long shapeCacheSize() {
+        return shapeCache != null ? shapeCache.estimatedSize() : 0;
+    }
+
+    private record PriceColumn(TitleDictionary.Table titles, double[] prices) {}
+}
@@ -0,0 +1,31 @@
+package com.bnpp.kata.bookdiscount.app.catalog;
+
+import com.bnpp.kata.bookdiscount.app.service.engine.DiscountTable;
+
+import java.util.Map;
+
+/**
+ * Catalog file contents, as written by the merchandising team:
+ * <pre>
+ * {
+ *   "bookPrice": 50.0,
+ *   "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 },
+ *   "titlePrices": { "Clean Architecture": 55.0 }
+ * }
+ * </pre>
+ * Titles without an entry in {@code titlePrices} cost {@code bookPrice};
+ * group sizes without an entry in {@code discounts} get no discount.
+ */
+public record CatalogDefinition(
+        Double bookPrice,
+        Map<Integer, Double> discounts,
+        Map<String, Double> titlePrices
+) {
+
+    /**
+     * The kata: every title at 50.0 with the five-title series discounts.
+     */
+    public static CatalogDefinition defaults() {
+        return new CatalogDefinition(50.0, DiscountTable.KATA_DISCOUNTS, Map.of());
+    }
+}
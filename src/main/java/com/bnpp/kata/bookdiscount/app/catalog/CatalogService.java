@@ -0,0 +1,140 @@
+package com.bnpp.kata.bookdiscount.app.catalog;
+
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.service.engine.LookupTablePriceEngine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current {@link Catalog} and swaps it atomically when the catalog file changes.
+ * <p>
+ * The file's modification time is polled on a single daemon thread. A new version is
+ * compiled completely before being published, so a request sees either the old catalog
+ * or the new one, never a mix. A file that fails to parse or validate is logged and
+ * ignored: the previous version keeps serving.
+ */
+@Slf4j
+@Component
+@Lazy(false)
+public class CatalogService {
+
+    private final PricingProperties properties;
+    private final Path location;
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final AtomicReference<Catalog> current = new AtomicReference<>();
+    private final ScheduledExecutorService reloader;
+    private FileTime loadedModificationTime;
+
+    @Autowired
+    public CatalogService(PricingProperties properties) {
+        PricingProperties.CatalogFile catalogFile = properties.catalog();
+        this.properties = properties;
+        this.location = catalogFile.location() == null || catalogFile.location().isBlank()
+                ? null
+                : Path.of(catalogFile.location());
+
+        if (location == null) {
+            current.set(Catalog.compile(CatalogDefinition.defaults(), properties, 1));
+            logLookupTable(current.get());
+            this.reloader = null;
+            return;
+        }
+        try {
+            loadedModificationTime = Files.getLastModifiedTime(location);
+            current.set(Catalog.compile(read(location), properties, 1));
+        } catch (IOException | JacksonException ex) {
+            throw new IllegalStateException("Cannot load catalog " + location, ex);
+        }
+        log.info("Loaded catalog {}", location);
+        logLookupTable(current.get());
+
+        Duration interval = catalogFile.reloadInterval();
+        if (interval == null || interval.isZero() || interval.isNegative()) {
+            this.reloader = null;
+            return;
+        }
+        this.reloader = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "catalog-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(this::reloadIfChanged,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The catalog to price with; read it once per request.
+     */
+    public Catalog current() {
+        return current.get();
+    }
+
+    /**
+     * Compiles and publishes the catalog file if it changed since it was last loaded.
+     *
+     * @return whether a new version was published
+     */
+    public synchronized boolean reloadIfChanged() {
+        if (location == null) {
+            return false;
+        }
+        try {
+            FileTime modificationTime = Files.getLastModifiedTime(location);
+            if (modificationTime.equals(loadedModificationTime)) {
+                return false;
+            }
+            Catalog previous = current.get();
+            Catalog next = Catalog.compile(read(location), properties, previous.version() + 1);
+            current.set(next);
+            loadedModificationTime = modificationTime;
+            log.info("Reloaded catalog {} as version {}", location, next.version());
+            logLookupTable(next);
+            return true;
+        } catch (IOException | JacksonException | IllegalArgumentException ex) {
+            log.warn("Ignoring catalog {}, keeping version {}: {}", location, current.get().version(), ex.getMessage());
+            return false;
+        } catch (RuntimeException ex) {
+            // Escaping the scheduled task would cancel it, and with it every later reload.
+            log.error("Ignoring catalog {}, keeping version {}", location, current.get().version(), ex);
+            return false;
+        }
+    }
+
+    private static void logLookupTable(Catalog catalog) {
+        LookupTablePriceEngine lookupTable = catalog.lookupTable();
+        if (lookupTable != null) {
+            log.info("Precomputed {} basket prices ({} KiB) in {} ms", lookupTable.entries(),
+                    lookupTable.memoryBytes() / 1024, TimeUnit.NANOSECONDS.toMillis(lookupTable.buildNanos()));
+        }
+    }
+
+    private CatalogDefinition read(Path path) throws IOException {
+        CatalogDefinition definition = jsonMapper.readValue(Files.readAllBytes(path), CatalogDefinition.class);
+        if (definition == null) {
+            throw new IllegalArgumentException("Catalog file holds no catalog");
+        }
+        return definition;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.bnpp.kata.bookdiscount.app.catalog;
+
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent dictionary of book titles, handing out dense integer IDs.
+ * <p>
+ * Titles are matched on their {@link #normalize normalized} form. ASCII titles are hashed and
+ * compared as raw request strings in place, so a title seen before costs no allocation; other
+ * titles are normalized first, since lower-casing them can change their length. The normalized
+ * form of an ASCII title is built once, when it is first interned.
+ * <p>
+ * Each {@link Table} holds at most 'maximumSize' titles. When it is full it is replaced by
+ * an empty one, which evicts every title at once; requests still holding the full table
+ * keep a consistent view of it. IDs are only meaningful within one table.
+ */
+@Component
+public class TitleDictionary {
+
+    private final int maximumSize;
+    private final AtomicReference<Table> current;
+
+    @Autowired
+    public TitleDictionary(PricingProperties properties) {
+        this(properties.titles().maximumSize());
+    }
+
+    public TitleDictionary(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Title dictionary size must be at least 1");
+        }
+        this.maximumSize = maximumSize;
+        this.current = new AtomicReference<>(new Table(maximumSize));
+    }
+
+    /**
+     * The table to intern with; take it once per request so every title of a basket gets its ID
+     * from the same table.
+     */
+    public Table table() {
+        return current.get();
+    }
+
+    /**
+     * Number of titles interned in the current table.
+     */
+    public int size() {
+        return current.get().size();
+    }
+
+    /**
+     * The normalized form of a title: trimmed like {@link String#trim()} and lower-cased like
+     * {@link String#toLowerCase(Locale)} in {@link Locale#ROOT}, with a fast path for ASCII titles.
+     */
+    public static String normalize(String title) {
+        int start = trimmedStart(title);
+        int end = trimmedEnd(title, start);
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            char c = title.charAt(i);
+            if (c >= 0x80) {
+                return title.substring(start, end).toLowerCase(Locale.ROOT);
+            }
+            chars[i - start] = toLowerAscii(c);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Whether the title is empty once trimmed like {@link String#trim()}, without trimming it.
+     */
+    public static boolean isBlank(String title) {
+        return trimmedStart(title) == title.length();
+    }
+
+    /**
+     * Lower-cases ASCII letters and leaves any other char as it is.
+     */
+    private static char toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static int trimmedStart(String title) {
+        int start = 0;
+        while (start < title.length() && title.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimmedEnd(String title, int start) {
+        int end = title.length();
+        while (end > start && title.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private void replaceFull(Table full) {
+        if (current.get() == full) {
+            current.compareAndSet(full, new Table(maximumSize));
+        }
+    }
+
+    /**
+     * One generation of the dictionary: an open-addressed, insert-only table at most half full.
+     */
+    public final class Table {
+
+        private final int maximumSize;
+        private final AtomicReferenceArray<Entry> slots;
+        private final AtomicReferenceArray<String> titlesById;
+        private final AtomicInteger nextId = new AtomicInteger();
+        private final int mask;
+
+        private Table(int maximumSize) {
+            int capacity = Integer.highestOneBit(Math.max(2, maximumSize) * 2 - 1) << 1;
+            this.maximumSize = maximumSize;
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.titlesById = new AtomicReferenceArray<>(maximumSize);
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * ID of a raw request title, interning it on first sight.
+         *
+         * @return the ID, or -1 when the title is new and this table is full
+         */
+        public int idOf(String rawTitle) {
+            String key = rawTitle;
+            int start = trimmedStart(key);
+            int end = trimmedEnd(key, start);
+            if (!isAscii(key, start, end)) {
+                key = normalize(rawTitle);
+                start = 0;
+                end = key.length();
+            }
+            int hash = hash(key, start, end);
+
+            Entry created = null;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                Entry entry = slots.get(slot);
+                while (entry == null) {
+                    if (created == null) {
+                        // Stop counting once full, so the counter cannot overflow back into valid IDs.
+                        int id = nextId.get() < maximumSize ? nextId.getAndIncrement() : maximumSize;
+                        if (id >= maximumSize) {
+                            // Evicts every title at once; this request falls back to merging by string.
+                            replaceFull(this);
+                            return -1;
+                        }
+                        created = new Entry(hash, key == rawTitle ? normalize(rawTitle) : key, id);
+                        titlesById.set(id, created.title);
+                    }
+                    if (slots.compareAndSet(slot, null, created)) {
+                        return created.id;
+                    }
+                    // Lost the slot to another insert. Slots only ever fill, so if that insert (or a later
+                    // one on this probe path) is the same title, probing on finds it, and the ID taken for
+                    // 'created' is never used: racing first sights of a title burn IDs, filling the table
+                    // a little early. Otherwise 'created' is inserted further along.
+                    entry = slots.get(slot);
+                }
+                if (entry.hash == hash && entry.matches(key, start, end)) {
+                    return entry.id;
+                }
+            }
+        }
+
+        /**
+         * Normalized title of an ID handed out by this table.
+         */
+        public String title(int id) {
+            return titlesById.get(id);
+        }
+
+        /**
+         * Bound on the IDs this table hands out.
+         */
+        public int maximumSize() {
+            return maximumSize;
+        }
+
+        /**
+         * Number of IDs handed out, including any burnt by racing inserts.
+         */
+        public int size() {
+            return Math.min(nextId.get(), maximumSize);
+        }
+    }
+
+    private static boolean isAscii(String title, int start, int end) {
+        int chars = 0;
+        for (int i = start; i < end; i++) {
+            chars |= title.charAt(i);
+        }
+        return chars < 0x80;
+    }
+
+    /**
+     * Hash of the chars between start and end with ASCII letters lower-cased: the hash of the normalized
+     * form of an ASCII title, or of a title already normalized.
+     */
+    private static int hash(String title, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + toLowerAscii(title.charAt(i));
+        }
+        return hash ^ hash >>> 16;
+    }
+
+    private record Entry(int hash, String title, int id) {
+
+        private boolean matches(String rawTitle, int start, int end) {
+            if (title.length() != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (toLowerAscii(rawTitle.charAt(i)) != title.charAt(i - start)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.bnpp.kata.bookdiscount.app.cli;
+
+import com.bnpp.kata.bookdiscount.app.config.BulkProperties;
+import com.bnpp.kata.bookdiscount.app.service.BulkPricingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Path;
+
+/**
+ * Offline bulk pricing: run with {@code --book-discount.bulk.input=<file>} and
+ * {@code --book-discount.bulk.output=<file>}, the application prices the file without starting
+ * the web server and exits once it is done. The input may equally be set as an environment variable
+ * or in a property file: {@link #requested} is the one test of whether this is a bulk run.
+ */
+@Slf4j
+@Component
+public class BulkPricingCommand implements ApplicationRunner {
+
+    private static final String INPUT_PROPERTY = "book-discount.bulk.input";
+
+    private final BulkPricingService bulkPricingService;
+    private final BulkProperties properties;
+
+    @Autowired
+    public BulkPricingCommand(BulkPricingService bulkPricingService, BulkProperties properties) {
+        this.bulkPricingService = bulkPricingService;
+        this.properties = properties;
+    }
+
+    /**
+     * Whether the environment asks for a bulk run rather than the web server: it names an input file.
+     */
+    public static boolean requested(Environment environment) {
+        return StringUtils.hasText(environment.getProperty(INPUT_PROPERTY));
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!StringUtils.hasText(properties.input())) {
+            return;
+        }
+        if (properties.output() == null || properties.output().isBlank()) {
+            throw new IllegalStateException("book-discount.bulk.output must name the file to write the prices to");
+        }
+        Path input = Path.of(properties.input());
+        Path output = Path.of(properties.output());
+        log.info("Pricing {} into {} with {} workers", input, output, properties.workers());
+        BulkPricingService.Summary summary = bulkPricingService.priceFile(input, output);
+        log.info("Priced {} baskets ({} errors) in {} ms, {} baskets/s", summary.baskets(), summary.errors(),
+                summary.elapsed().toMillis(), Math.round(summary.basketsPerSecond()));
+    }
+}
@@ -0,0 +1,44 @@
+package com.bnpp.kata.bookdiscount.app.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Admission control of the pricing API, bound from {@code book-discount.admission.*}: each client
+ * (its remote address, or the 'clientHeader' request header when set) may send 'rate' requests per second with
+ * bursts of 'burst', and the baskets being priced may cost at most 'maxInFlightCost' in total,
+ * a basket costing its line count times its total quantity. Buckets of clients idle for
+ * 'clientIdleTimeout' are dropped, and at most 'maximumClients' are tracked.
+ * Clients choose their own headers, so 'clientHeader' is only sound behind a trusted proxy that sets it
+ * (and overwrites whatever the client sent); unset, clients are told apart by address alone.
+ */
+@ConfigurationProperties(prefix = "book-discount.admission")
+public record AdmissionProperties(
+
+        @DefaultValue("true")
+        boolean enabled,
+
+        String clientHeader,
+
+        @DefaultValue("200")
+        double rate,
+
+        @DefaultValue("400")
+        int burst,
+
+        @DefaultValue("2000000")
+        long maxInFlightCost,
+
+        @DefaultValue("10m")
+        Duration clientIdleTimeout,
+
+        @DefaultValue("100000")
+        long maximumClients
+) {
+
+    public static AdmissionProperties defaults() {
+        return new AdmissionProperties(true, null, 200, 400, 2_000_000, Duration.ofMinutes(10), 100_000);
+    }
+}
@@ -0,0 +1,32 @@
+package com.bnpp.kata.bookdiscount.app.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Offline bulk pricing, bound from {@code book-discount.bulk.*}: the NDJSON file 'input' is priced
+ * into 'output' by 'parallelism' workers (0 = available processors), 'chunkSize' of input at a time.
+ * With 'echo' every result repeats the basket it prices, as the streaming endpoint does.
+ */
+@ConfigurationProperties(prefix = "book-discount.bulk")
+public record BulkProperties(
+
+        String input,
+
+        String output,
+
+        @DefaultValue("0")
+        int parallelism,
+
+        @DefaultValue("4MB")
+        DataSize chunkSize,
+
+        @DefaultValue("false")
+        boolean echo
+) {
+
+    public int workers() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+}
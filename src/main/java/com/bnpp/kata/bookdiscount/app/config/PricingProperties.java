@@ -0,0 +1,218 @@
+package com.bnpp.kata.bookdiscount.app.config;
+
+import com.bnpp.kata.bookdiscount.app.service.engine.MinorUnits;
+import lombok.With;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.math.RoundingMode;
+import java.time.Duration;
+
+/**
+ * Tuning knobs of the pricing engine, bound from {@code book-discount.pricing.*}.
+ * Tests and benchmarks derive variants from {@link #defaults()} with the generated withers.
+ */
+@With
+@ConfigurationProperties(prefix = "book-discount.pricing")
+public record PricingProperties(
+
+        @DefaultValue
+        Cache cache,
+
+        @DefaultValue
+        Batch batch,
+
+        @DefaultValue
+        CatalogFile catalog,
+
+        @DefaultValue
+        Titles titles,
+
+        @DefaultValue
+        Lookup lookup,
+
+        @DefaultValue
+        Sessions sessions,
+
+        @DefaultValue
+        Money money,
+
+        @DefaultValue
+        Budget budget,
+
+        @DefaultValue
+        Coalescing coalescing,
+
+        @DefaultValue
+        Async async,
+
+        @DefaultValue
+        Streaming streaming
+) {
+
+    /**
+     * Shared cache of solved basket shapes.
+     */
+    public record Cache(
+
+            @DefaultValue("true")
+            boolean enabled,
+
+            @DefaultValue("10000")
+            long maximumSize
+    ) {}
+
+    /**
+     * Batch pricing: parallelism of the dedicated pool (0 = available processors)
+     * and the largest number of baskets accepted in one request.
+     */
+    public record Batch(
+
+            @DefaultValue("0")
+            int parallelism,
+
+            @DefaultValue("10000")
+            int maximumBaskets
+    ) {}
+
+    /**
+     * Catalog of book prices and discounts: a JSON file polled for changes every
+     * 'reloadInterval' (0 disables reloading). Without a location the kata catalog is used.
+     */
+    public record CatalogFile(
+
+            String location,
+
+            @DefaultValue("5s")
+            Duration reloadInterval
+    ) {}
+
+    /**
+     * Dictionary of interned request titles: once 'maximumSize' titles are held it starts over empty.
+     */
+    public record Titles(
+
+            @DefaultValue("100000")
+            int maximumSize
+    ) {}
+
+    /**
+     * Prices of every shape of at most 'maxTitles' titles and 'maxCopies' copies per title,
+     * precomputed for the catalog's default book price whenever a catalog version is loaded.
+     */
+    public record Lookup(
+
+            @DefaultValue("true")
+            boolean enabled,
+
+            @DefaultValue("5")
+            int maxTitles,
+
+            @DefaultValue("20")
+            int maxCopies
+    ) {}
+
+    /**
+     * Basket sessions edited item by item: at most 'maximumSize' open sessions of at most
+     * 'maximumTitles' distinct titles each, expired once idle for 'timeToLive'.
+     */
+    public record Sessions(
+
+            @DefaultValue("30m")
+            Duration timeToLive,
+
+            @DefaultValue("100000")
+            long maximumSize,
+
+            @DefaultValue("1000")
+            int maximumTitles
+    ) {}
+
+    /**
+     * Fixed-point money: prices are whole numbers of minor units with 'scale' decimals,
+     * and each discounted group price is rounded to a minor unit with 'rounding'.
+     */
+    public record Money(
+
+            @DefaultValue("2")
+            int scale,
+
+            @DefaultValue("HALF_EVEN")
+            RoundingMode rounding
+    ) {
+
+        public MinorUnits minorUnits() {
+            return new MinorUnits(scale, rounding);
+        }
+    }
+
+    /**
+     * Bound on one exact solve: at most 'maxStates' DP states within 'timeLimit' (0 = unbounded).
+     * A basket that outgrows it gets the greedy upper bound flagged as approximate,
+     * or is refused with 422 when 'onExceeded' is REJECT.
+     */
+    public record Budget(
+
+            @DefaultValue("2000000")
+            long maxStates,
+
+            @DefaultValue("250ms")
+            Duration timeLimit,
+
+            @DefaultValue("APPROXIMATE")
+            OnExceeded onExceeded
+    ) {
+
+        public enum OnExceeded { APPROXIMATE, REJECT }
+    }
+
+    /**
+     * Single-flight solving: concurrent requests for the same basket shape wait on one solve
+     * instead of each running it. Shapes priced in constant time are never coalesced.
+     */
+    public record Coalescing(
+
+            @DefaultValue("true")
+            boolean enabled
+    ) {}
+
+    /**
+     * Asynchronous pricing: threads of the dedicated pool (0 = available processors), baskets allowed
+     * to wait for one (beyond that they are refused with 429), and how long a request may take in all.
+     */
+    public record Async(
+
+            @DefaultValue("0")
+            int parallelism,
+
+            @DefaultValue("1000")
+            int queueCapacity,
+
+            @DefaultValue("5s")
+            Duration timeout
+    ) {}
+
+    /**
+     * NDJSON feeds, streamed or bulk: a line longer than 'maxLineLength' is skipped unread up to its
+     * line break and answered with an error, so one endless line cannot exhaust the heap.
+     */
+    public record Streaming(
+
+            @DefaultValue("1MB")
+            DataSize maxLineLength
+    ) {
+
+        public int maxLineBytes() {
+            return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, maxLineLength.toBytes()));
+        }
+    }
+
+    public static PricingProperties defaults() {
+        return new PricingProperties(new Cache(true, 10_000), new Batch(0, 10_000),
+                new CatalogFile(null, Duration.ofSeconds(5)), new Titles(100_000), new Lookup(true, 5, 20),
+                new Sessions(Duration.ofMinutes(30), 100_000, 1_000), new Money(2, RoundingMode.HALF_EVEN),
+                new Budget(2_000_000, Duration.ofMillis(250), Budget.OnExceeded.APPROXIMATE), new Coalescing(true),
+                new Async(0, 1_000, Duration.ofSeconds(5)), new Streaming(DataSize.ofMegabytes(1)));
+    }
+}
@@ -0,0 +1,38 @@
+package com.bnpp.kata.bookdiscount.app.controller;
+
+import com.bnpp.kata.bookdiscount.app.config.AdmissionProperties;
+import com.bnpp.kata.bookdiscount.app.service.AdmissionControl;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Rate limits pricing requests before their body is read, let alone validated or priced.
+ * A client is its remote address, or its 'clientHeader' request header when one is configured
+ * (only behind a trusted proxy that sets it) and present.
+ */
+@Component
+public class AdmissionInterceptor implements HandlerInterceptor {
+
+    private final AdmissionControl admission;
+    private final String clientHeader;
+
+    @Autowired
+    public AdmissionInterceptor(AdmissionControl admission, AdmissionProperties properties) {
+        this.admission = admission;
+        String header = properties.clientHeader();
+        this.clientHeader = header == null || header.isBlank() ? null : header;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.REQUEST) {
+            String client = clientHeader == null ? null : request.getHeader(clientHeader);
+            admission.admitRate(client != null && !client.isBlank() ? client : request.getRemoteAddr());
+        }
+        return true;
+    }
+}
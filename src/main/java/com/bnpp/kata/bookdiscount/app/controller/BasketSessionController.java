@@ -0,0 +1,68 @@
+package com.bnpp.kata.bookdiscount.app.controller;
+
+import com.bnpp.kata.bookdiscount.app.model.BasketSessionResponse;
+import com.bnpp.kata.bookdiscount.app.model.UserBasketRequest;
+import com.bnpp.kata.bookdiscount.app.service.BasketSessionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("api/price/sessions")
+@Validated
+@Tag(name = "Basket-Session", description = "API to re-price a basket edited item by item")
+public class BasketSessionController {
+
+    private final BasketSessionService sessionService;
+
+    @Autowired
+    public BasketSessionController(BasketSessionService sessionService) {
+        this.sessionService = sessionService;
+    }
+
+    @Operation(
+            summary = "Open a basket session",
+            description = "Starts a basket, empty or holding the given books, and returns its id and best price"
+    )
+    @PostMapping
+    public ResponseEntity<BasketSessionResponse> open(@RequestBody(required = false) UserBasketRequest request) {
+        BasketSessionResponse session = sessionService.open(request == null ? null : request.bookItemList());
+        return ResponseEntity.status(HttpStatus.CREATED).body(session);
+    }
+
+    @Operation(
+            summary = "Add or remove books",
+            description = "Each quantity is a change: positive adds copies, negative removes them. "
+                    + "Either every change applies or none does; returns the new best price"
+    )
+    @PatchMapping("/{sessionId}")
+    public ResponseEntity<BasketSessionResponse> edit(@PathVariable String sessionId,
+                                                      @Valid @RequestBody UserBasketRequest request) {
+        return ResponseEntity.ok(sessionService.edit(sessionId, request.bookItemList()));
+    }
+
+    @Operation(summary = "Current contents and best price of a basket session")
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<BasketSessionResponse> current(@PathVariable String sessionId) {
+        return ResponseEntity.ok(sessionService.current(sessionId));
+    }
+
+    @Operation(summary = "Close a basket session")
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<Void> close(@PathVariable String sessionId) {
+        sessionService.close(sessionId);
+        return ResponseEntity.noContent().build();
+    }
+}
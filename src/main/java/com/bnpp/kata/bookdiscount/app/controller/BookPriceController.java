@@ -1,18 +1,37 @@
 package com.bnpp.kata.bookdiscount.app.controller;
 
+import com.bnpp.kata.bookdiscount.app.model.BatchBasketRequest;
+import com.bnpp.kata.bookdiscount.app.model.BatchPriceResponse;
 import com.bnpp.kata.bookdiscount.app.model.BookPriceResponse;
+import com.bnpp.kata.bookdiscount.app.model.DiscountGroup;
+import com.bnpp.kata.bookdiscount.app.service.AdmissionControl;
+import com.bnpp.kata.bookdiscount.app.service.AsyncPricingService;
+import com.bnpp.kata.bookdiscount.app.service.BatchPricingService;
 import com.bnpp.kata.bookdiscount.app.service.BookPriceService;
+import com.bnpp.kata.bookdiscount.app.service.StreamingPricingService;
+import com.bnpp.kata.bookdiscount.app.service.engine.Grouping;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
 import com.bnpp.kata.bookdiscount.app.model.UserBasketRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("api/price")
@@ -21,19 +40,116 @@ import org.springframework.web.bind.annotation.RestController;
 public class BookPriceController {
 
     private final BookPriceService priceService;
+    private final BatchPricingService batchPricingService;
+    private final StreamingPricingService streamingPricingService;
+    private final AsyncPricingService asyncPricingService;
+    private final AdmissionControl admission;
 
     @Autowired
-    public BookPriceController(BookPriceService priceService){
+    public BookPriceController(BookPriceService priceService, BatchPricingService batchPricingService,
+                               StreamingPricingService streamingPricingService, AsyncPricingService asyncPricingService,
+                               AdmissionControl admission){
         this.priceService = priceService;
+        this.batchPricingService = batchPricingService;
+        this.streamingPricingService = streamingPricingService;
+        this.asyncPricingService = asyncPricingService;
+        this.admission = admission;
     }
 
     @Operation(
             summary = "Calculate total price for a basket of books",
-            description = "Takes a map of book titles to quantities and returns the total price with discounts applied"
+            description = "Takes a map of book titles to quantities and returns the total price with discounts applied. "
+                    + "Accepts and returns JSON or CBOR (application/cbor); echo=false leaves the basket out of the response, "
+                    + "explain=true adds the optimal split into discounted groups"
+    )
+    @PostMapping(value = "/calculate",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<BookPriceResponse> calculatePrice(@Valid @RequestBody UserBasketRequest request,
+                                                            @RequestParam(defaultValue = "true") boolean echo,
+                                                            @RequestParam(defaultValue = "false") boolean explain) {
+        try (AdmissionControl.Permit permit = admission.acquire(AdmissionControl.cost(request.bookItemList()))) {
+            SolveContext context = explain ? SolveContext.explaining() : new SolveContext();
+            double totalPrice = priceService.calculatePrice(request.bookItemList(), context);
+            return response(request, echo, totalPrice, context);
+        }
+    }
+
+    @Operation(
+            summary = "Calculate total price for a basket of books, off the request thread",
+            description = "Same request and response as /calculate. Baskets that need a search are priced on a "
+                    + "dedicated pool: a full queue answers 429 with Retry-After, a request not priced within the "
+                    + "timeout answers 503, and a basket still queued when its client goes away is dropped"
+    )
+    @PostMapping(value = "/calculate-async",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public DeferredResult<ResponseEntity<BookPriceResponse>> calculatePriceAsync(
+            @Valid @RequestBody UserBasketRequest request,
+            @RequestParam(defaultValue = "true") boolean echo,
+            @RequestParam(defaultValue = "false") boolean explain) {
+        AdmissionControl.Permit permit = admission.acquire(AdmissionControl.cost(request.bookItemList()));
+        SolveContext context = explain ? SolveContext.explaining() : new SolveContext();
+        CompletableFuture<Double> totalPrice = asyncPricingService.calculatePrice(request.bookItemList(), context,
+                permit);
+        DeferredResult<ResponseEntity<BookPriceResponse>> result =
+                new DeferredResult<>(asyncPricingService.timeout().toMillis());
+        result.onTimeout(() -> totalPrice.cancel(false));
+        result.onError(failure -> totalPrice.cancel(false));
+        totalPrice.whenComplete((price, failure) -> {
+            if (failure == null) {
+                result.setResult(response(request, echo, price, context));
+            } else if (!(failure instanceof CancellationException)) {
+                result.setErrorResult(failure instanceof CompletionException ? failure.getCause() : failure);
+            }
+        });
+        return result;
+    }
+
+    private ResponseEntity<BookPriceResponse> response(UserBasketRequest request, boolean echo, double totalPrice,
+                                                       SolveContext context) {
+        long minorUnits = priceService.minorUnits(totalPrice);
+        if (!context.explains()) {
+            return ResponseEntity.ok(echo ? BookPriceResponse.of(request, totalPrice, minorUnits, context.approximate())
+                    : BookPriceResponse.priceOnly(totalPrice, minorUnits, context.approximate()));
+        }
+        return ResponseEntity.ok(new BookPriceResponse(echo ? request : null, totalPrice, minorUnits,
+                discountGroups(context.grouping()), context.approximate() ? true : null));
+    }
+
+    private static List<DiscountGroup> discountGroups(Grouping grouping) {
+        return grouping.groups().stream()
+                .map(group -> new DiscountGroup(group.titles(), group.sets(),
+                        group.listPrice(), group.price(), group.saving()))
+                .toList();
+    }
+
+    @Operation(
+            summary = "Calculate total prices for a batch of baskets",
+            description = "Prices every basket in parallel, solving identical basket shapes once; "
+                    + "invalid baskets get an error entry instead of failing the batch. Accepts and returns JSON or CBOR"
+    )
+    @PostMapping(value = "/calculate-batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<BatchPriceResponse> calculateBatch(@Valid @RequestBody BatchBasketRequest request) {
+        try (AdmissionControl.Permit permit = admission.acquire(AdmissionControl.batchCost(request.baskets()))) {
+            return ResponseEntity.ok(batchPricingService.calculatePrices(request.baskets()));
+        }
+    }
+
+    @Operation(
+            summary = "Stream prices for a newline-delimited feed of baskets",
+            description = "Reads one basket per NDJSON line and writes one price (or per-line error) "
+                    + "per line as soon as it is computed, in constant memory"
     )
-    @PostMapping("/calculate")
-    public ResponseEntity<BookPriceResponse> calculatePrice(@Valid @RequestBody UserBasketRequest request) {
-        double totalPrice = priceService.calculatePrice(request.bookItemList());
-        return ResponseEntity.ok(BookPriceResponse.of(request, totalPrice));
+    @PostMapping(value = "/calculate-stream",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> calculateStream(InputStream feed) {
+        StreamingResponseBody body = output -> streamingPricingService.priceFeed(feed, output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 }
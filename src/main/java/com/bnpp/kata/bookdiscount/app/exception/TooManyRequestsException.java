@@ -0,0 +1,18 @@
+package com.bnpp.kata.bookdiscount.app.exception;
+
+import lombok.Getter;
+
+/**
+ * A request refused by admission control, answered 429 with a Retry-After of 'retryAfterSeconds'.
+ * Thrown on the hot path under overload, so it carries no stack trace.
+ */
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String msg, long retryAfterSeconds) {
+        super(msg, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,25 @@
+package com.bnpp.kata.bookdiscount.app.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome for one basket of a batch: either its best price or the validation error.
+ * 'approximate' is only present, and true, when the price is the solver budget's upper bound.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BasketPriceResult(
+        int index,
+        Double bestOfferedPrice,
+        Long bestOfferedPriceMinorUnits,
+        Boolean approximate,
+        String error
+) {
+
+    public static BasketPriceResult priced(int index, double price, long minorUnits, boolean approximate){
+        return new BasketPriceResult(index, price, minorUnits, approximate ? true : null, null);
+    }
+
+    public static BasketPriceResult failed(int index, String error){
+        return new BasketPriceResult(index, null, null, null, error);
+    }
+}
@@ -0,0 +1,19 @@
+package com.bnpp.kata.bookdiscount.app.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * State of a basket session after an edit: its merged contents and their best price,
+ * also in exact minor units. 'approximate' is only present, and true, when the price
+ * is the solver budget's upper bound.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BasketSessionResponse(
+        String sessionId,
+        List<BookItem> bookItemList,
+        double bestOfferedPrice,
+        long bestOfferedPriceMinorUnits,
+        Boolean approximate
+) {}
@@ -0,0 +1,17 @@
+package com.bnpp.kata.bookdiscount.app.model;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Baskets are deliberately not cascaded with @Valid: each one is validated on its own
+ * so that a bad basket yields an error entry instead of failing the whole batch.
+ */
+public record BatchBasketRequest(
+
+        @NotNull(message = "Baskets must not be null")
+        @Size(min = 1, message = "Must contain at least one basket")
+        List<UserBasketRequest> baskets
+) {}
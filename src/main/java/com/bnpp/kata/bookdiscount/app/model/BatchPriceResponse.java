@@ -0,0 +1,8 @@
+package com.bnpp.kata.bookdiscount.app.model;
+
+import java.util.List;
+
+public record BatchPriceResponse(
+        List<BasketPriceResult> results,
+        int distinctShapes
+) {}
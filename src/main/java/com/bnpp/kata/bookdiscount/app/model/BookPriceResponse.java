@@ -1,12 +1,31 @@
 package com.bnpp.kata.bookdiscount.app.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Best price of a basket, also as an exact number of minor units (cents);
+ * 'userRequest' echoes the basket unless the caller opted out,
+ * 'groups' explains the price when the caller asked for it.
+ * 'approximate' is only present, and true, when the basket outgrew the solver budget
+ * and the price is an upper bound rather than the optimum.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record BookPriceResponse(
         UserBasketRequest userRequest,
-        double bestOfferedPrice
+        double bestOfferedPrice,
+        long bestOfferedPriceMinorUnits,
+        List<DiscountGroup> groups,
+        Boolean approximate
 ) {
 
-    public static BookPriceResponse of(UserBasketRequest request, double price){
-        return new BookPriceResponse(request, price);
+    public static BookPriceResponse of(UserBasketRequest request, double price, long minorUnits, boolean approximate){
+        return new BookPriceResponse(request, price, minorUnits, null, approximate ? true : null);
+    }
+
+    public static BookPriceResponse priceOnly(double price, long minorUnits, boolean approximate){
+        return new BookPriceResponse(null, price, minorUnits, null, approximate ? true : null);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+package com.bnpp.kata.bookdiscount.app.model;
+
+/**
+ * 'sets' identical groups of 'titles' distinct books in the optimal split of a basket:
+ * each listed at 'listPrice', sold at 'price', saving 'saving'.
+ */
+public record DiscountGroup(
+        int titles,
+        long sets,
+        double listPrice,
+        double price,
+        double saving
+) {}
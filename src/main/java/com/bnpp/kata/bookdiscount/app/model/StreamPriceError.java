@@ -0,0 +1,9 @@
+package com.bnpp.kata.bookdiscount.app.model;
+
+/**
+ * Written in place of a {@link BookPriceResponse} when one line of an NDJSON feed cannot be priced.
+ */
+public record StreamPriceError(
+        long line,
+        String error
+) {}
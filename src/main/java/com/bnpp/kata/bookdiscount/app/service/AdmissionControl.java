@@ -0,0 +1,168 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.config.AdmissionProperties;
+import com.bnpp.kata.bookdiscount.app.exception.TooManyRequestsException;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.model.UserBasketRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process admission control of the pricing API:
+ * 1. A token bucket per client: 'rate' requests per second, bursts of up to 'burst',
+ *    taken before the request body is even read
+ * 2. A global budget on the estimated cost of the baskets in flight, a basket costing
+ *    its line count (at least its distinct titles) times its total quantity, acquired
+ *    before the baskets are priced
+ * A refused request fails fast with {@link TooManyRequestsException} (429).
+ * <p>
+ * Each bucket is one AtomicLong holding its theoretical arrival time (the generic cell rate
+ * algorithm, equivalent to a token bucket) and the budget is one AtomicLong of cost in flight,
+ * both updated by compare-and-set: no locks, and no allocation once a client has its bucket.
+ * A basket costing more than the whole budget is admitted only when nothing else is in flight.
+ */
+@Service
+public class AdmissionControl {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final long maxInFlightCost;
+    private final Cache<String, AtomicLong> buckets;
+    private final AtomicLong inFlightCost = new AtomicLong();
+    private final LongSupplier clock;
+    private final PricingMetrics metrics;
+
+    @Autowired
+    public AdmissionControl(AdmissionProperties properties, PricingMetrics metrics) {
+        this(properties, metrics, System::nanoTime);
+    }
+
+    AdmissionControl(AdmissionProperties properties, PricingMetrics metrics, LongSupplier clock) {
+        this.enabled = properties.enabled();
+        this.emissionInterval = Math.max(1, Math.round(NANOS_PER_SECOND / properties.rate()));
+        this.burstTolerance = emissionInterval * Math.max(0, properties.burst() - 1);
+        this.maxInFlightCost = properties.maxInFlightCost();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.maximumClients())
+                .expireAfterAccess(properties.clientIdleTimeout())
+                .build();
+        this.clock = clock;
+        this.metrics = metrics;
+        metrics.bindAdmission(inFlightCost, buckets);
+    }
+
+    /**
+     * Takes one token from the bucket of 'client'.
+     *
+     * @throws TooManyRequestsException when the client is over its rate
+     */
+    public void admitRate(String client) {
+        if (!enabled) {
+            return;
+        }
+        AtomicLong bucket = buckets.get(client, key -> new AtomicLong(Long.MIN_VALUE));
+        long now = clock.getAsLong();
+        long arrival;
+        long next;
+        do {
+            arrival = bucket.get();
+            next = (arrival == Long.MIN_VALUE || arrival - now < 0 ? now : arrival) + emissionInterval;
+            long wait = next - now - emissionInterval - burstTolerance;
+            if (wait > 0) {
+                metrics.recordAdmissionRejected(PricingMetrics.Admission.RATE);
+                throw new TooManyRequestsException("Request rate limit exceeded",
+                        Math.max(1, (wait + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND));
+            }
+        } while (!bucket.compareAndSet(arrival, next));
+    }
+
+    /**
+     * Reserves 'cost' (see {@link #cost}) of the in-flight budget for baskets about to be priced.
+     * The permit must be closed once they are, to give the cost back.
+     *
+     * @throws TooManyRequestsException when the budget is spent
+     */
+    public Permit acquire(long cost) {
+        if (!enabled) {
+            return Permit.NONE;
+        }
+        long weight = Math.max(1, cost);
+        long current;
+        do {
+            current = inFlightCost.get();
+            if (current > 0 && current + weight > maxInFlightCost) {
+                metrics.recordAdmissionRejected(PricingMetrics.Admission.CONCURRENCY);
+                throw new TooManyRequestsException("Too many baskets being priced, retry shortly", 1);
+            }
+        } while (!inFlightCost.compareAndSet(current, current + weight));
+        return new Permit(inFlightCost, weight);
+    }
+
+    /**
+     * Estimated cost of pricing every basket of a batch.
+     */
+    public static long batchCost(List<UserBasketRequest> baskets) {
+        long total = 0;
+        for (UserBasketRequest basket : baskets) {
+            long cost = cost(basket == null ? null : basket.bookItemList());
+            total = total > Long.MAX_VALUE - cost ? Long.MAX_VALUE : total + cost;
+        }
+        return total;
+    }
+
+    /**
+     * Estimated cost of pricing 'items': lines times total copies, saturating.
+     */
+    public static long cost(List<BookItem> items) {
+        if (items == null || items.isEmpty()) {
+            return 1;
+        }
+        long copies = 0;
+        for (BookItem item : items) {
+            if (item != null && item.quantity() != null && item.quantity() > 0) {
+                copies += item.quantity();
+            }
+        }
+        return copies > Long.MAX_VALUE / items.size() ? Long.MAX_VALUE : Math.max(1, copies * items.size());
+    }
+
+    /**
+     * Cost of the baskets currently admitted and not yet released.
+     */
+    public long inFlightCost() {
+        return inFlightCost.get();
+    }
+
+    /**
+     * The share of the in-flight budget held by one admitted request.
+     */
+    public static final class Permit implements AutoCloseable {
+
+        static final Permit NONE = new Permit(null, 0);
+
+        private final AtomicLong inFlightCost;
+        private final long weight;
+
+        private Permit(AtomicLong inFlightCost, long weight) {
+            this.inFlightCost = inFlightCost;
+            this.weight = weight;
+        }
+
+        @Override
+        public void close() {
+            if (inFlightCost != null) {
+                inFlightCost.addAndGet(-weight);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.exception.TooManyRequestsException;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.service.engine.BasketShape;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prices baskets off the request thread, on a dedicated pool sized to the cores:
+ * 1. Validate and canonicalize the basket on the caller's thread (cheap, and errors surface at once)
+ * 2. Shapes priced in constant time are priced there too, without a queue hop
+ * 3. Any other shape waits in a bounded queue for a pool thread; once the queue is full it is
+ *    refused with {@link TooManyRequestsException} (429) instead of waiting.
+ * Cancelling the returned future (client gone, request timed out) takes a waiting basket out of
+ * the queue; a solve already running completes within the solver budget and its price is dropped.
+ * The basket's admission permit is released once no thread works on it any more, not on cancellation,
+ * so the in-flight budget keeps counting a solve that outlives its request.
+ */
+@Service
+public class AsyncPricingService {
+
+    private final BookPriceService priceService;
+    private final PricingMetrics metrics;
+    private final ThreadPoolExecutor pricingPool;
+    private final Duration timeout;
+
+    @Autowired
+    public AsyncPricingService(BookPriceService priceService, PricingProperties properties, PricingMetrics metrics) {
+        PricingProperties.Async async = properties.async();
+        int parallelism = async.parallelism() > 0 ? async.parallelism() : Runtime.getRuntime().availableProcessors();
+        this.priceService = priceService;
+        this.metrics = metrics;
+        this.pricingPool = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(async.queueCapacity()),
+                Thread.ofPlatform().name("async-pricing-", 1).daemon().factory());
+        this.timeout = async.timeout();
+        metrics.bindAsyncPricing(pricingPool);
+    }
+
+    /**
+     * How long an asynchronous request may take from its arrival to its price.
+     */
+    public Duration timeout() {
+        return timeout;
+    }
+
+    /**
+     * {@link BookPriceService#calculatePrice(List, SolveContext)}, completed on the pricing pool unless
+     * the basket is priced in constant time. The context must not be read before the future completes.
+     * Takes over 'permit' and closes it once the basket is priced, refused, or dropped from the queue.
+     *
+     * @throws com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException when the basket is invalid
+     * @throws TooManyRequestsException when the pricing queue is full
+     */
+    public CompletableFuture<Double> calculatePrice(List<BookItem> items, SolveContext context,
+                                                    AdmissionControl.Permit permit) {
+        long start = System.nanoTime();
+        BasketShape shape;
+        try {
+            shape = priceService.canonicalShape(items);
+            if (priceService.pricedInConstantTime(shape, context)) {
+                double price = priceService.priceShape(shape, context);
+                metrics.recordTotal(shape.counts().length, System.nanoTime() - start);
+                permit.close();
+                return CompletableFuture.completedFuture(price);
+            }
+        } catch (RuntimeException ex) {
+            permit.close();
+            throw ex;
+        }
+        CompletableFuture<Double> price = new CompletableFuture<>();
+        Runnable solve = () -> {
+            try {
+                if (!price.isDone()) {
+                    price.complete(priceService.priceShape(shape, context));
+                    metrics.recordTotal(shape.counts().length, System.nanoTime() - start);
+                }
+            } catch (RuntimeException | Error ex) {
+                price.completeExceptionally(ex);
+            } finally {
+                permit.close();
+            }
+        };
+        try {
+            pricingPool.execute(solve);
+        } catch (RejectedExecutionException ex) {
+            permit.close();
+            metrics.recordAdmissionRejected(PricingMetrics.Admission.QUEUE);
+            throw new TooManyRequestsException("Pricing queue is full, retry shortly", 1);
+        }
+        price.whenComplete((priced, failure) -> {
+            // Only a task taken out of the queue never runs, and so never closes the permit itself.
+            if (price.isCancelled() && pricingPool.remove(solve)) {
+                permit.close();
+            }
+        });
+        return price;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pricingPool.shutdownNow();
+    }
+}
@@ -0,0 +1,228 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.catalog.Catalog;
+import com.bnpp.kata.bookdiscount.app.catalog.TitleDictionary;
+import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.service.engine.BasketShape;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * One basket being edited item by item.
+ * <p>
+ * Titles are kept merged and sorted by quantity then unit price, descending, exactly like
+ * the canonical shape of {@link BookPriceService}: an edit moves one entry to its new place
+ * instead of re-validating, re-merging and re-sorting the whole basket, and the price is
+ * only solved again when the shape actually changed.
+ * Not thread-safe: callers lock the session around each use.
+ */
+final class BasketSession {
+
+    private String[] titles = new String[4];
+    private String[] displayTitles = new String[4];
+    private int[] counts = new int[4];
+    private double[] unitPrices = new double[4];
+    private int length;
+    private long catalogVersion;
+    private boolean shapeChanged;
+    private double price;
+    private boolean approximate;
+
+    BasketSession(Catalog catalog) {
+        this.catalogVersion = catalog.version();
+    }
+
+    /**
+     * Applies every edit, positive quantities adding copies and negative ones removing them.
+     * Either all edits apply or, when one is invalid, none does.
+     */
+    void applyAll(List<BookItem> edits, Catalog catalog, int maximumTitles) {
+        String[] savedTitles = titles.clone();
+        String[] savedDisplayTitles = displayTitles.clone();
+        int[] savedCounts = counts.clone();
+        double[] savedUnitPrices = unitPrices.clone();
+        int savedLength = length;
+        boolean savedShapeChanged = shapeChanged;
+        try {
+            for (BookItem edit : edits) {
+                apply(edit, catalog, maximumTitles);
+            }
+        } catch (InvalidBasketException ex) {
+            titles = savedTitles;
+            displayTitles = savedDisplayTitles;
+            counts = savedCounts;
+            unitPrices = savedUnitPrices;
+            length = savedLength;
+            shapeChanged = savedShapeChanged;
+            throw ex;
+        }
+    }
+
+    private void apply(BookItem edit, Catalog catalog, int maximumTitles) {
+        String rawTitle = edit == null ? null : edit.title();
+        if (rawTitle == null || TitleDictionary.isBlank(rawTitle)) {
+            throw new InvalidBasketException("Book title must not be null or empty");
+        }
+        Integer delta = edit.quantity();
+        if (delta == null) {
+            throw new InvalidBasketException("Quantity for book '%s' must not be null".formatted(rawTitle.trim()));
+        }
+        String title = TitleDictionary.normalize(rawTitle);
+        int index = indexOf(title);
+        if (index < 0) {
+            if (delta < 0) {
+                throw new InvalidBasketException("Cannot remove %d copies of '%s': the basket holds 0"
+                        .formatted(-delta, rawTitle.trim()));
+            }
+            if (delta == 0) {
+                return;
+            }
+            if (length == maximumTitles) {
+                throw new InvalidBasketException("Basket session must not hold more than %d titles"
+                        .formatted(maximumTitles));
+            }
+            index = append(title, rawTitle.trim(), catalog.unitPrice(title));
+        }
+        long count = (long) counts[index] + delta;
+        if (count < 0) {
+            throw new InvalidBasketException("Cannot remove %d copies of '%s': the basket holds %d"
+                    .formatted(-delta, displayTitles[index], counts[index]));
+        }
+        if (count > Integer.MAX_VALUE) {
+            throw new InvalidBasketException("Quantity for book '%s' is too large".formatted(displayTitles[index]));
+        }
+        counts[index] = (int) count;
+        shapeChanged |= delta != 0;
+        if (count == 0) {
+            remove(index);
+        } else {
+            reposition(index);
+        }
+    }
+
+    private int indexOf(String title) {
+        for (int i = 0; i < length; i++) {
+            if (titles[i].equals(title)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int append(String title, String displayTitle, double unitPrice) {
+        if (length == titles.length) {
+            int capacity = length * 2;
+            titles = Arrays.copyOf(titles, capacity);
+            displayTitles = Arrays.copyOf(displayTitles, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            unitPrices = Arrays.copyOf(unitPrices, capacity);
+        }
+        titles[length] = title;
+        displayTitles[length] = displayTitle;
+        counts[length] = 0;
+        unitPrices[length] = unitPrice;
+        return length++;
+    }
+
+    private void remove(int index) {
+        int moved = length - index - 1;
+        System.arraycopy(titles, index + 1, titles, index, moved);
+        System.arraycopy(displayTitles, index + 1, displayTitles, index, moved);
+        System.arraycopy(counts, index + 1, counts, index, moved);
+        System.arraycopy(unitPrices, index + 1, unitPrices, index, moved);
+        length--;
+        titles[length] = null;
+        displayTitles[length] = null;
+    }
+
+    /**
+     * Moves the entry at 'index' up or down until the order is restored.
+     */
+    private void reposition(int index) {
+        while (index > 0 && precedes(index, index - 1)) {
+            swap(index, index - 1);
+            index--;
+        }
+        while (index < length - 1 && precedes(index + 1, index)) {
+            swap(index, index + 1);
+            index++;
+        }
+    }
+
+    private boolean precedes(int left, int right) {
+        return counts[left] > counts[right]
+                || counts[left] == counts[right] && unitPrices[left] > unitPrices[right];
+    }
+
+    private void swap(int left, int right) {
+        String title = titles[left];
+        titles[left] = titles[right];
+        titles[right] = title;
+        String displayTitle = displayTitles[left];
+        displayTitles[left] = displayTitles[right];
+        displayTitles[right] = displayTitle;
+        int count = counts[left];
+        counts[left] = counts[right];
+        counts[right] = count;
+        double unitPrice = unitPrices[left];
+        unitPrices[left] = unitPrices[right];
+        unitPrices[right] = unitPrice;
+    }
+
+    /**
+     * Takes the unit prices of a newly published catalog version, if any.
+     */
+    void refresh(Catalog catalog) {
+        if (catalog.version() == catalogVersion) {
+            return;
+        }
+        catalogVersion = catalog.version();
+        for (int i = 0; i < length; i++) {
+            unitPrices[i] = catalog.unitPrice(titles[i]);
+        }
+        for (int i = 1; i < length; i++) {
+            for (int j = i; j > 0 && precedes(j, j - 1); j--) {
+                swap(j, j - 1);
+            }
+        }
+        shapeChanged = true;
+    }
+
+    /**
+     * Price of the basket, solved with 'solver' only when the shape changed since the last call.
+     */
+    double price(ToDoubleBiFunction<BasketShape, SolveContext> solver) {
+        if (shapeChanged) {
+            SolveContext context = new SolveContext();
+            price = length == 0 ? 0.0
+                    : solver.applyAsDouble(new BasketShape(Arrays.copyOf(counts, length), Arrays.copyOf(unitPrices, length)),
+                            context);
+            approximate = context.approximate();
+            shapeChanged = false;
+        }
+        return price;
+    }
+
+    /**
+     * Whether the last {@link #price} is the solver budget's upper bound rather than the optimum.
+     */
+    boolean approximate() {
+        return approximate;
+    }
+
+    /**
+     * Current contents, largest quantities first, under the titles as first entered.
+     */
+    List<BookItem> items() {
+        List<BookItem> items = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            items.add(new BookItem(displayTitles[i], counts[i]));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,122 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.catalog.Catalog;
+import com.bnpp.kata.bookdiscount.app.catalog.CatalogService;
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
+import com.bnpp.kata.bookdiscount.app.model.BasketSessionResponse;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * In-memory baskets edited item by item, each edit answered with the new best price.
+ * <p>
+ * Sessions are bounded in number and size, and expire once idle for the configured time to live;
+ * an expired or unknown session answers 404, after which the client opens a new one.
+ * Opening and editing a session price it, so they hold an admission permit for the basket it will hold;
+ * a request refused admission (429) leaves the session as it was.
+ */
+@Service
+public class BasketSessionService {
+
+    private final BookPriceService priceService;
+    private final CatalogService catalogs;
+    private final AdmissionControl admission;
+    private final Cache<String, BasketSession> sessions;
+    private final int maximumTitles;
+
+    @Autowired
+    public BasketSessionService(BookPriceService priceService, CatalogService catalogs, AdmissionControl admission,
+                                PricingProperties properties, PricingMetrics metrics) {
+        PricingProperties.Sessions settings = properties.sessions();
+        this.priceService = priceService;
+        this.catalogs = catalogs;
+        this.admission = admission;
+        this.maximumTitles = settings.maximumTitles();
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(settings.maximumSize())
+                .expireAfterAccess(settings.timeToLive())
+                .scheduler(Scheduler.systemScheduler())
+                .recordStats()
+                .build();
+        metrics.bindSessions(sessions);
+    }
+
+    /**
+     * Opens a session holding 'items' (possibly none) and prices it.
+     */
+    public BasketSessionResponse open(List<BookItem> items) {
+        try (AdmissionControl.Permit permit = admission.acquire(AdmissionControl.cost(items))) {
+            Catalog catalog = catalogs.current();
+            BasketSession session = new BasketSession(catalog);
+            if (items != null) {
+                session.applyAll(items, catalog, maximumTitles);
+            }
+            String sessionId = UUID.randomUUID().toString();
+            sessions.put(sessionId, session);
+            synchronized (session) {
+                return respond(sessionId, session);
+            }
+        }
+    }
+
+    /**
+     * Adds (positive quantity) or removes (negative quantity) copies, all edits or none,
+     * and returns the new best price.
+     */
+    public BasketSessionResponse edit(String sessionId, List<BookItem> edits) {
+        BasketSession session = find(sessionId);
+        synchronized (session) {
+            List<BookItem> edited = new ArrayList<>(session.items());
+            if (edits != null) {
+                edited.addAll(edits);
+            }
+            try (AdmissionControl.Permit permit = admission.acquire(AdmissionControl.cost(edited))) {
+                session.applyAll(edits, catalogs.current(), maximumTitles);
+                return respond(sessionId, session);
+            }
+        }
+    }
+
+    public BasketSessionResponse current(String sessionId) {
+        BasketSession session = find(sessionId);
+        synchronized (session) {
+            return respond(sessionId, session);
+        }
+    }
+
+    public void close(String sessionId) {
+        if (sessions.asMap().remove(sessionId) == null) {
+            throw notFound(sessionId);
+        }
+    }
+
+    private BasketSession find(String sessionId) {
+        BasketSession session = sessions.getIfPresent(sessionId);
+        if (session == null) {
+            throw notFound(sessionId);
+        }
+        return session;
+    }
+
+    private BasketSessionResponse respond(String sessionId, BasketSession session) {
+        session.refresh(catalogs.current());
+        double price = session.price(priceService::priceShape);
+        return new BasketSessionResponse(sessionId, session.items(), price, priceService.minorUnits(price),
+                session.approximate() ? true : null);
+    }
+
+    private static InvalidBasketException notFound(String sessionId) {
+        return new InvalidBasketException("Basket session '%s' does not exist or has expired".formatted(sessionId),
+                HttpStatus.NOT_FOUND);
+    }
+}
@@ -0,0 +1,92 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
+import com.bnpp.kata.bookdiscount.app.model.BasketPriceResult;
+import com.bnpp.kata.bookdiscount.app.model.BatchPriceResponse;
+import com.bnpp.kata.bookdiscount.app.model.UserBasketRequest;
+import com.bnpp.kata.bookdiscount.app.service.engine.BasketShape;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+@Service
+public class BatchPricingService {
+
+    private final BookPriceService priceService;
+    private final ForkJoinPool pricingPool;
+    private final int maximumBaskets;
+
+    @Autowired
+    public BatchPricingService(BookPriceService priceService, PricingProperties properties) {
+        PricingProperties.Batch batch = properties.batch();
+        int parallelism = batch.parallelism() > 0 ? batch.parallelism() : Runtime.getRuntime().availableProcessors();
+        this.priceService = priceService;
+        this.pricingPool = new ForkJoinPool(parallelism);
+        this.maximumBaskets = batch.maximumBaskets();
+    }
+
+    /**
+     * Prices every basket of the batch:
+     * 1. Validate and canonicalize each basket (errors are kept per basket)
+     * 2. Solve each distinct shape once, in parallel, on the bounded pricing pool
+     * 3. Map the prices back to the baskets, in request order.
+     */
+    public BatchPriceResponse calculatePrices(List<UserBasketRequest> baskets) {
+        if (baskets.size() > maximumBaskets) {
+            throw new InvalidBasketException("Batch must not contain more than %d baskets".formatted(maximumBaskets));
+        }
+        List<Outcome> outcomes = new ArrayList<>(baskets.size());
+        Map<BasketShape, CompletableFuture<Solve>> solves = new HashMap<>();
+        for (UserBasketRequest basket : baskets) {
+            try {
+                BasketShape shape = priceService.canonicalShape(basket == null ? null : basket.bookItemList());
+                outcomes.add(new Outcome(solves.computeIfAbsent(shape,
+                        key -> CompletableFuture.supplyAsync(() -> solve(key), pricingPool)), null));
+            } catch (InvalidBasketException ex) {
+                outcomes.add(new Outcome(null, ex.getMessage()));
+            }
+        }
+
+        List<BasketPriceResult> results = new ArrayList<>(outcomes.size());
+        for (int index = 0; index < outcomes.size(); index++) {
+            Outcome outcome = outcomes.get(index);
+            Solve solve = outcome.error() == null ? outcome.solve().join() : null;
+            String error = solve == null ? outcome.error() : solve.error();
+            results.add(error != null
+                    ? BasketPriceResult.failed(index, error)
+                    : BasketPriceResult.priced(index, solve.price(), priceService.minorUnits(solve.price()),
+                            solve.approximate()));
+        }
+        return new BatchPriceResponse(results, solves.size());
+    }
+
+    /**
+     * Prices one shape; a shape refused over the solver budget fails only the baskets that have it.
+     */
+    private Solve solve(BasketShape shape) {
+        SolveContext context = new SolveContext();
+        try {
+            return new Solve(priceService.priceShape(shape, context), context.approximate(), null);
+        } catch (InvalidBasketException ex) {
+            return new Solve(0.0, false, ex.getMessage());
+        }
+    }
+
+    private record Solve(double price, boolean approximate, String error) {}
+
+    private record Outcome(CompletableFuture<Solve> solve, String error) {}
+
+    @PreDestroy
+    void shutdown() {
+        pricingPool.shutdown();
+    }
+}
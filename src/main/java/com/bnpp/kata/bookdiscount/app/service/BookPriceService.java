@@ -1,30 +1,49 @@
 package com.bnpp.kata.bookdiscount.app.service;
 
+import com.bnpp.kata.bookdiscount.app.catalog.Catalog;
+import com.bnpp.kata.bookdiscount.app.catalog.CatalogService;
+import com.bnpp.kata.bookdiscount.app.catalog.TitleDictionary;
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
 import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
 import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.service.engine.BasketShape;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveBudgetExceededException;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.Optional;
-import java.util.Objects;
-import java.util.Comparator;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 @Service
 public class BookPriceService {
 
-    private static final Map<Integer, Double> DISCOUNTS = Map.of(
-            1, 0.00,
-            2, 0.05,
-            3, 0.10,
-            4, 0.20,
-            5, 0.25
-    );
+    private final CatalogService catalogs;
+    private final TitleDictionary titleDictionary;
+    private final PricingMetrics metrics;
+    private final SingleFlight<FlightKey, Solved> flights = new SingleFlight<>();
 
-    private static final double BOOK_PRICE = 50.0;
+    public BookPriceService() {
+        this(PricingProperties.defaults(), PricingMetrics.noop());
+    }
+
+    public BookPriceService(PricingProperties properties, PricingMetrics metrics) {
+        this(new CatalogService(properties), new TitleDictionary(properties), metrics);
+    }
+
+    @Autowired
+    public BookPriceService(CatalogService catalogs, TitleDictionary titleDictionary, PricingMetrics metrics) {
+        this.catalogs = catalogs;
+        this.titleDictionary = titleDictionary;
+        this.metrics = metrics;
+        metrics.bindShapeCache(this);
+        metrics.bindSolverBudget(catalogs);
+        metrics.bindSingleFlight(flights);
+    }
 
     /**
      * Main method orchestrating the entire price calculation:
@@ -32,80 +51,203 @@ public class BookPriceService {
      * 2. Normalize + merge titles (case-insensitive)
      * 3. Prepare sorted quantity list
      * 4. Compute optimal discounted price.
+     * Steps 1 to 3 run as one pass over the items.
      */
     public double calculatePrice(List<BookItem> items) {
-        validateBasket(items);
-        Map<String, Integer> merged = mergeDuplicateTitles(items);
-        List<Integer> sortedCounts = extractSortedCounts(merged);
-        if (sortedCounts.isEmpty()) {
-            throw new InvalidBasketException("Basket must contain at least one book with quantity > 0");
-        }
-        return computeOptimalPrice(sortedCounts, new HashMap<>());
+        return calculatePrice(items, new SolveContext());
     }
 
-    // =======================================================================
-    //                            VALIDATION
-    // =======================================================================
+    /**
+     * {@link #calculatePrice(List)} recording into the caller's context, e.g. an
+     * {@link SolveContext#explaining() explaining} one to get the optimal grouping back.
+     */
+    public double calculatePrice(List<BookItem> items, SolveContext context) {
+        long start = System.nanoTime();
+        BasketShape shape = canonicalShape(items);
+        double price = priceShape(shape, context);
+        metrics.recordTotal(shape.counts().length, System.nanoTime() - start);
+        return price;
+    }
+
+    /**
+     * Steps 1 to 3 of {@link #calculatePrice}: the validated basket reduced to its
+     * canonical shape. Baskets with the same shape always have the same price.
+     */
+    public BasketShape canonicalShape(List<BookItem> items) {
+        try {
+            long start = System.nanoTime();
+            BasketShape shape = ingest(items, catalogs.current());
+            metrics.recordPhase(PricingMetrics.Phase.INGEST, System.nanoTime() - start);
+            if (shape.counts().length == 0) {
+                throw new InvalidBasketException("Basket must contain at least one book with quantity > 0");
+            }
+            return shape;
+        } catch (InvalidBasketException ex) {
+            metrics.recordRejection(ex);
+            throw ex;
+        }
+    }
 
     /**
-     * Validates user input for:
-     * - Null list
-     * - Empty list
-     * - Invalid book title (null/blank)
-     * - Invalid quantity (null/negative)
-     * - Ensures at least one positive quantity
+     * Step 4 of {@link #calculatePrice}: optimal price of an already canonical shape.
      */
-    private void validateBasket(List<BookItem> items) {
-        requireNonNullList(items);
-        requireNonEmptyList(items);
-        validateEachBookItem(items);
-        ensureAtLeastOnePositiveQuantity(items);
+    public double priceShape(BasketShape shape) {
+        return priceShape(shape, new SolveContext());
     }
 
-    private void requireNonNullList(List<BookItem> items) {
-        Optional.ofNullable(items)
-                .orElseThrow(() -> new InvalidBasketException("Basket must not be null"));
+    /**
+     * {@link #priceShape(BasketShape)} within the catalog's solver budget, counted from now.
+     * A shape that outgrows it gets the greedy upper bound instead and the context is marked
+     * {@link SolveContext#approximate() approximate}, or it is refused with 422 when the budget says REJECT.
+     * Concurrent calls for the same shape under the same catalog wait on one solve (see {@link SingleFlight})
+     * and share its outcome; the callers that waited record no explored states.
+     */
+    public double priceShape(BasketShape shape, SolveContext context) {
+        long start = System.nanoTime();
+        Catalog catalog = catalogs.current();
+        double price;
+        try {
+            if (catalog.coalesces(shape, context)) {
+                Solved solved = flights.run(new FlightKey(catalog, shape, context.explains()),
+                        () -> new Solved(solve(catalog, shape, context), context));
+                if (solved.context() != context) {
+                    context.adopt(solved.context());
+                    metrics.recordCoalesced();
+                }
+                price = solved.price();
+            } else {
+                price = solve(catalog, shape, context);
+            }
+        } catch (InvalidBasketException ex) {
+            metrics.recordRejection(ex);
+            throw ex;
+        }
+        metrics.recordPhase(PricingMetrics.Phase.SOLVE, System.nanoTime() - start);
+        metrics.recordSolve(shape.counts(), context.statesExplored());
+        return price;
     }
 
-    private void requireNonEmptyList(List<BookItem> items) {
-        Optional.of(items)
-                .filter(bookList -> !bookList.isEmpty())
-                .orElseThrow(() -> new InvalidBasketException("Basket must contain at least one entry"));
+    /**
+     * Whether {@link #priceShape(BasketShape, SolveContext)} answers the shape in constant time
+     * (precomputed, or by the kata closed form) rather than by searching.
+     */
+    public boolean pricedInConstantTime(BasketShape shape, SolveContext context) {
+        return catalogs.current().constantTime(shape, context);
     }
 
-    private void validateEachBookItem(List<BookItem> items) {
-        items.forEach(item -> {
-            String title = Optional.ofNullable(item.title())
-                    .map(String::trim)
-                    .filter(bookTitle -> !bookTitle.isEmpty())
-                    .orElseThrow(() ->
-                            new InvalidBasketException("Book title must not be null or empty"));
+    private double solve(Catalog catalog, BasketShape shape, SolveContext context) {
+        PricingProperties.Budget budget = catalog.budget();
+        context.limit(budget.maxStates(), budget.timeLimit());
+        try {
+            return catalog.price(shape, context);
+        } catch (SolveBudgetExceededException ex) {
+            metrics.recordBudgetExceeded(budget.onExceeded());
+            if (budget.onExceeded() == PricingProperties.Budget.OnExceeded.REJECT) {
+                throw new InvalidBasketException(
+                        "Basket is too large to price within the solver budget", HttpStatus.UNPROCESSABLE_CONTENT);
+            }
+            context.markApproximate();
+            return catalog.approximatePrice(shape, context);
+        }
+    }
 
-            Integer qty = Optional.ofNullable(item.quantity())
-                    .orElseThrow(() ->
-                            new InvalidBasketException("Quantity for book '%s' must not be null".formatted(title)));
+    /**
+     * The exact number of minor units (cents) a computed price stands for.
+     */
+    public long minorUnits(double price) {
+        return catalogs.current().minorUnits(price);
+    }
 
-            Optional.of(qty)
-                    .filter(quantity -> quantity >= 0)
-                    .orElseThrow(() ->
-                            new InvalidBasketException("Quantity for book '%s' must not be negative".formatted(title)));
-        });
+    /**
+     * Hit/miss counters of the current catalog's shape caches (all zero when the cache is disabled).
+     */
+    public CacheStats shapeCacheStats() {
+        return catalogs.current().shapeCacheStats();
     }
 
-    private void ensureAtLeastOnePositiveQuantity(List<BookItem> items) {
-        items.stream()
-                .map(BookItem::quantity)
-                .filter(Objects::nonNull)
-                .filter( count-> count > 0)
-                .findFirst()
-                .orElseThrow(() ->
-                        new InvalidBasketException("Basket must contain at least one book with quantity > 0"));
+    public long shapeCacheSize() {
+        return catalogs.current().shapeCacheSize();
     }
 
     // =======================================================================
-    //                    MERGING + NORMALIZATION LAYER
+    //                      VALIDATION + MERGING (single pass)
     // =======================================================================
 
+    /**
+     * Validates, normalizes, merges and sorts the basket in one traversal of the items,
+     * without Optional, stream or per-item String allocation. Failures keep the messages
+     * and precedence of the former four-stage validation:
+     * - Null list, then empty list
+     * - Item by item, in order: null item, null/blank title, null quantity, negative quantity
+     * - Then no positive quantity at all.
+     * Titles are merged through their dictionary IDs: each positive line item becomes
+     * (title ID, quantity) packed in a long, the longs are sorted and each run of equal IDs summed.
+     */
+    private BasketShape ingest(List<BookItem> items, Catalog catalog) {
+        if (items == null) {
+            throw new InvalidBasketException("Basket must not be null");
+        }
+        if (items.isEmpty()) {
+            throw new InvalidBasketException("Basket must contain at least one entry");
+        }
+        TitleDictionary.Table titles = titleDictionary.table();
+        long[] lines = new long[items.size()];
+        int lineCount = 0;
+        boolean interned = true;
+        for (BookItem item : items) {
+            if (item == null) {
+                throw new InvalidBasketException("Basket item must not be null");
+            }
+            String title = item.title();
+            if (title == null || TitleDictionary.isBlank(title)) {
+                throw new InvalidBasketException("Book title must not be null or empty");
+            }
+            Integer quantity = item.quantity();
+            if (quantity == null) {
+                throw new InvalidBasketException("Quantity for book '%s' must not be null".formatted(title.trim()));
+            }
+            if (quantity < 0) {
+                throw new InvalidBasketException("Quantity for book '%s' must not be negative".formatted(title.trim()));
+            }
+            if (quantity > 0 && interned) {
+                int id = titles.idOf(title);
+                interned = id >= 0;
+                lines[lineCount++] = (long) id << 32 | quantity;
+            }
+        }
+        if (lineCount == 0) {
+            throw new InvalidBasketException("Basket must contain at least one book with quantity > 0");
+        }
+        if (!interned) {
+            // The dictionary filled up during this request: merge by normalized title instead.
+            return extractSortedShape(mergeDuplicateTitles(items), catalog);
+        }
+        return mergeLines(lines, lineCount, titles, catalog);
+    }
+
+    /**
+     * Sums the quantities of each title ID among the first 'lineCount' packed lines
+     * and sorts the positive totals, priced from the catalog's column for the table.
+     */
+    private BasketShape mergeLines(long[] lines, int lineCount, TitleDictionary.Table titles, Catalog catalog) {
+        Arrays.sort(lines, 0, lineCount);
+        double[] prices = catalog.unitPrices(titles);
+        int[] counts = new int[lineCount];
+        double[] unitPrices = new double[lineCount];
+        int length = 0;
+        for (int run = 0; run < lineCount; ) {
+            int id = (int) (lines[run] >>> 32);
+            int quantity = 0;
+            for (; run < lineCount && (int) (lines[run] >>> 32) == id; run++) {
+                quantity += (int) lines[run];
+            }
+            if (quantity > 0) {
+                length = insertSorted(counts, unitPrices, length, quantity, prices[id]);
+            }
+        }
+        return new BasketShape(Arrays.copyOf(counts, length), Arrays.copyOf(unitPrices, length));
+    }
+
     /**
      * Merges duplicate titles ignoring case,
      * producing a Map<title(lowercase), totalQuantity>.
@@ -113,95 +255,53 @@ public class BookPriceService {
     private Map<String, Integer> mergeDuplicateTitles(List<BookItem> items) {
         return items.stream()
                 .collect(Collectors.toMap(
-                        item -> normalizeTitle(item.title()),
+                        item -> TitleDictionary.normalize(item.title()),
                         BookItem::quantity,
                         Integer::sum
                 ));
     }
-    /*
-     * Convert all input name as lower-case to avoid duplicate entry.
-     */
-    private String normalizeTitle(String title) {
-        return title.trim().toLowerCase();
-    }
-
-    /**
-     * Extracts quantities > 0 and sorts them descending.
-     */
-    private List<Integer> extractSortedCounts(Map<String, Integer> merged) {
-        return merged.values().stream()
-                .filter(quantity -> quantity != null && quantity > 0)
-                .sorted(Comparator.reverseOrder())
-                .toList();
-    }
-
-    // =======================================================================
-    //                          DYNAMIC PROGRAMMING (DP)
-    // =======================================================================
 
     /**
-     * Recursively computes the minimum possible total price by considering:
-     * - All possible groups of distinct books (1–5 titles)
-     * - Associated discounts
-     * - Remaining book counts after forming each group
-     * Memoization avoids re-solving duplicate subproblems.
+     * Extracts quantities > 0 with their catalog unit price,
+     * sorted by quantity then unit price, descending.
      */
-    private double computeOptimalPrice(List<Integer> bookCounts, Map<String, Double> cache) {
-        List<Integer> normalized = normalizeCounts(bookCounts);
-        if (normalized.isEmpty()) {
-            return 0.0;
+    private BasketShape extractSortedShape(Map<String, Integer> merged, Catalog catalog) {
+        int[] counts = new int[merged.size()];
+        double[] unitPrices = new double[merged.size()];
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : merged.entrySet()) {
+            Integer quantity = entry.getValue();
+            if (quantity != null && quantity > 0) {
+                length = insertSorted(counts, unitPrices, length, quantity, catalog.unitPrice(entry.getKey()));
+            }
         }
-        String key = normalized.toString();
-        if (cache.containsKey(key)) {
-            return cache.get(key);
-        }
-        double bestPrice = tryAllGroupSizes(normalized, cache);
-        cache.put(key, bestPrice);
-        return bestPrice;
-    }
-
-    private List<Integer> normalizeCounts(List<Integer> counts) {
-        return counts.stream()
-                .filter(count -> count > 0)
-                .sorted(Comparator.reverseOrder())
-                .toList();
+        return new BasketShape(Arrays.copyOf(counts, length), Arrays.copyOf(unitPrices, length));
     }
 
     /**
-     * Tries group sizes from 1 to N distinct titles and
-     * returns the cheapest combination.
+     * Inserts one title into the first 'length' entries, kept sorted by quantity
+     * then unit price, descending. Returns the new length.
      */
-    private double tryAllGroupSizes(List<Integer> state, Map<String, Double> cache) {
-        int maxGroupSize = state.size();
-        return IntStream.rangeClosed(1, maxGroupSize)
-                .mapToDouble(size -> computeCostForGroup(size, state, cache))
-                .min()
-                .orElse(Double.MAX_VALUE);
+    private int insertSorted(int[] counts, double[] unitPrices, int length, int quantity, double unitPrice) {
+        int slot = length;
+        while (slot > 0 && (counts[slot - 1] < quantity
+                || counts[slot - 1] == quantity && unitPrices[slot - 1] < unitPrice)) {
+            counts[slot] = counts[slot - 1];
+            unitPrices[slot] = unitPrices[slot - 1];
+            slot--;
+        }
+        counts[slot] = quantity;
+        unitPrices[slot] = unitPrice;
+        return length + 1;
     }
 
     /**
-     * Computes:
-     * - New state after forming a group of size 'groupSize'
-     * - Cost of that group based on discount rules
-     * - Total cost = group cost + recursive cost of remaining books
+     * Solves that may be coalesced: same shape, same catalog version, and whether the grouping is wanted.
      */
-    private double computeCostForGroup(int groupSize, List<Integer> state, Map<String, Double> cache) {
-        List<Integer> newState = applyGroupSelection(state, groupSize);
-        double discount = DISCOUNTS.getOrDefault(groupSize, 0.0);
-        double groupCost = groupSize * BOOK_PRICE * (1 - discount);
-        double recursiveCost = computeOptimalPrice(newState, cache);
-        return groupCost + recursiveCost;
-    }
+    private record FlightKey(Catalog catalog, BasketShape shape, boolean explains) {}
 
     /**
-     * Reduces count of the first 'groupSize' titles by 1,
-     * producing the next DP state.
+     * Outcome of a coalesced solve, with the context of the caller that ran it.
      */
-    private List<Integer> applyGroupSelection(List<Integer> state, int groupSize) {
-        return IntStream.range(0, state.size())
-                .map(i -> i < groupSize ? state.get(i) - 1 : state.get(i))
-                .boxed()
-                .toList();
-    }
+    private record Solved(double price, SolveContext context) {}
 }
-
@@ -0,0 +1,261 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.config.BulkProperties;
+import com.bnpp.kata.bookdiscount.app.model.StreamPriceError;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+@Service
+public class BulkPricingService {
+
+    private static final byte NEWLINE = '\n';
+    private static final int SCAN_BLOCK = 64 * 1024;
+
+    private final StreamingPricingService linePricer;
+    private final ObjectMapper objectMapper;
+    private final int workers;
+    private final long chunkSize;
+    private final boolean echo;
+
+    @Autowired
+    public BulkPricingService(StreamingPricingService linePricer, ObjectMapper objectMapper, BulkProperties properties) {
+        this.linePricer = linePricer;
+        this.objectMapper = objectMapper;
+        this.workers = properties.workers();
+        this.chunkSize = Math.max(1, properties.chunkSize().toBytes());
+        this.echo = properties.echo();
+    }
+
+    /**
+     * Prices an NDJSON file of baskets into 'output', one result line per non-blank input line
+     * exactly as {@link StreamingPricingService#priceFeed} writes them, in input order:
+     * 1. Cut the input into chunks of about 'chunkSize' bytes ending on a line break
+     * 2. Count the lines of every chunk in parallel, so each chunk knows its first line number
+     * 3. Price the chunks in parallel, each one memory-mapped and rendered into its own buffer
+     * 4. Write the buffers in chunk order, keeping at most two chunks per worker in flight.
+     * The output must be another file than the input, which opening it would otherwise truncate.
+     */
+    public Summary priceFile(Path input, Path output) throws IOException {
+        if (Files.exists(output) && Files.isSameFile(input, output)) {
+            throw new IllegalArgumentException("Bulk output " + output + " is the input file, it would be truncated");
+        }
+        long started = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long[] bounds = chunkBounds(in);
+            int chunks = bounds.length - 1;
+
+            List<CompletableFuture<Long>> counts = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                long start = bounds[c];
+                long end = bounds[c + 1];
+                counts.add(CompletableFuture.supplyAsync(() -> countLines(in, start, end), pool));
+            }
+            long[] firstLines = new long[chunks];
+            for (int c = 1; c < chunks; c++) {
+                firstLines[c] = firstLines[c - 1] + counts.get(c - 1).join();
+            }
+
+            ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+            int submitted = 0;
+            long baskets = 0;
+            long errors = 0;
+            while (submitted < chunks || !inFlight.isEmpty()) {
+                while (submitted < chunks && inFlight.size() < 2 * workers) {
+                    int c = submitted++;
+                    inFlight.add(CompletableFuture.supplyAsync(
+                            () -> priceChunk(in, bounds[c], bounds[c + 1], firstLines[c]), pool));
+                }
+                Chunk chunk = inFlight.poll().join();
+                ByteBuffer buffer = ByteBuffer.wrap(chunk.output(), 0, chunk.length());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                baskets += chunk.baskets();
+                errors += chunk.errors();
+            }
+            return new Summary(baskets, errors, Duration.ofNanos(System.nanoTime() - started));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Chunk boundaries: 0, then the offset just past the first line break at or after every
+     * 'chunkSize' bytes, then the file size. A line longer than a chunk stays in one chunk.
+     */
+    private long[] chunkBounds(FileChannel in) throws IOException {
+        long size = in.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(8 * 1024);
+        long position = 0;
+        while (position < size) {
+            long end = Math.min(size, position + chunkSize);
+            if (end < size && !endsLine(in, end, probe)) {
+                end = nextLineEnd(in, end, size, probe);
+            }
+            bounds.add(end);
+            position = end;
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static boolean endsLine(FileChannel in, long offset, ByteBuffer probe) throws IOException {
+        probe.clear().limit(1);
+        in.read(probe, offset - 1);
+        return probe.get(0) == NEWLINE;
+    }
+
+    /**
+     * Offset just past the next line break at or after 'offset', or 'size' when there is none.
+     */
+    private static long nextLineEnd(FileChannel in, long offset, long size, ByteBuffer probe) throws IOException {
+        while (offset < size) {
+            probe.clear();
+            int read = in.read(probe, offset);
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == NEWLINE) {
+                    return offset + i + 1;
+                }
+            }
+            offset += Math.max(read, 0);
+        }
+        return size;
+    }
+
+    private static long countLines(FileChannel in, long start, long end) {
+        MappedByteBuffer mapped = map(in, start, end);
+        byte[] block = new byte[SCAN_BLOCK];
+        long lines = 0;
+        while (mapped.hasRemaining()) {
+            int length = Math.min(block.length, mapped.remaining());
+            mapped.get(block, 0, length);
+            for (int i = 0; i < length; i++) {
+                if (block[i] == NEWLINE) {
+                    lines++;
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Prices the lines of [start, end), the first of which is line 'firstLine + 1' of the file.
+     */
+    private Chunk priceChunk(FileChannel in, long start, long end, long firstLine) {
+        MappedByteBuffer mapped = map(in, start, end);
+        ChunkWriter writer = new ChunkWriter((int) Math.min(Integer.MAX_VALUE - 8, end - start), firstLine);
+        int maxLineLength = linePricer.maxLineLength();
+        byte[] block = new byte[SCAN_BLOCK];
+        byte[] line = new byte[1024];
+        int lineLength = 0;
+        boolean overlong = false;
+        while (mapped.hasRemaining()) {
+            int length = Math.min(block.length, mapped.remaining());
+            mapped.get(block, 0, length);
+            int from = 0;
+            while (from < length) {
+                int to = from;
+                while (to < length && block[to] != NEWLINE) {
+                    to++;
+                }
+                if (!overlong && lineLength + (to - from) > maxLineLength) {
+                    overlong = true;
+                } else if (!overlong) {
+                    if (lineLength + (to - from) > line.length) {
+                        line = Arrays.copyOf(line, Math.min(maxLineLength,
+                                Math.max(2 * line.length, lineLength + (to - from))));
+                    }
+                    System.arraycopy(block, from, line, lineLength, to - from);
+                    lineLength += to - from;
+                }
+                if (to == length) {
+                    break;
+                }
+                writer.line(line, lineLength, overlong);
+                lineLength = 0;
+                overlong = false;
+                from = to + 1;
+            }
+        }
+        if (lineLength > 0 || overlong) {
+            writer.line(line, lineLength, overlong);
+        }
+        return writer.chunk();
+    }
+
+    private static MappedByteBuffer map(FileChannel in, long start, long end) {
+        try {
+            return in.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Outcome of a whole file: baskets priced, lines that failed (malformed or invalid baskets), and wall time.
+     */
+    public record Summary(long baskets, long errors, Duration elapsed) {
+
+        public double basketsPerSecond() {
+            long nanos = Math.max(1, elapsed.toNanos());
+            return (baskets + errors) * 1e9 / nanos;
+        }
+    }
+
+    private record Chunk(byte[] output, int length, long baskets, long errors) {}
+
+    /**
+     * Renders the results of one chunk's lines, in order, into a buffer handed over without a copy.
+     */
+    private final class ChunkWriter extends ByteArrayOutputStream {
+
+        private long lineNumber;
+        private long baskets;
+        private long errors;
+
+        ChunkWriter(int size, long firstLine) {
+            super(size);
+            this.lineNumber = firstLine;
+        }
+
+        void line(byte[] line, int length, boolean overlong) {
+            Object result = linePricer.priceLine(line, length, overlong, ++lineNumber, echo);
+            if (result == null) {
+                return;
+            }
+            writeBytes(objectMapper.writeValueAsBytes(result));
+            write(NEWLINE);
+            if (result instanceof StreamPriceError) {
+                errors++;
+            } else {
+                baskets++;
+            }
+        }
+
+        Chunk chunk() {
+            return new Chunk(buf, count, baskets, errors);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.catalog.CatalogService;
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micrometer meters of the pricing hot path. All meters are registered up front
+ * (or once per rejection reason), so recording never allocates a meter id.
+ */
+@Component
+public class PricingMetrics {
+
+    /**
+     * INGEST: validation, title merging and sorting, fused in one pass; SOLVE: the optimal grouping.
+     */
+    public enum Phase { INGEST, SOLVE }
+
+    /**
+     * Why admission control refused a request: RATE, its client's token bucket; CONCURRENCY, the in-flight cost budget;
+     * QUEUE, a full queue of the asynchronous pricing pool.
+     */
+    public enum Admission { RATE, CONCURRENCY, QUEUE }
+
+    /**
+     * Distinct-title tag values are capped so the number of time series stays bounded.
+     */
+    private static final int MAX_TITLES_TAG = 10;
+
+    private final MeterRegistry registry;
+    private final Timer[] phaseTimers;
+    private final Timer[] totalTimersByTitles;
+    private final DistributionSummary distinctTitles;
+    private final DistributionSummary totalQuantity;
+    private final DistributionSummary statesExplored;
+    private final Counter[] budgetExceeded;
+    private final Counter coalesced;
+    private final Counter[] admissionRejected;
+    private final ConcurrentMap<String, Counter> rejections = new ConcurrentHashMap<>();
+
+    @Autowired
+    public PricingMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.phaseTimers = new Timer[Phase.values().length];
+        for (Phase phase : Phase.values()) {
+            phaseTimers[phase.ordinal()] = Timer.builder("bookdiscount.pricing.phase")
+                    .description("Time spent in each stage of calculatePrice")
+                    .tag("phase", phase.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        this.totalTimersByTitles = new Timer[MAX_TITLES_TAG + 1];
+        for (int titles = 1; titles <= MAX_TITLES_TAG; titles++) {
+            totalTimersByTitles[titles] = Timer.builder("bookdiscount.pricing")
+                    .description("End-to-end calculatePrice latency by distinct title count")
+                    .tag("titles", titles == MAX_TITLES_TAG ? MAX_TITLES_TAG + "+" : String.valueOf(titles))
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        this.distinctTitles = DistributionSummary.builder("bookdiscount.basket.titles")
+                .description("Distinct titles per priced basket")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.totalQuantity = DistributionSummary.builder("bookdiscount.basket.quantity")
+                .description("Total copies per priced basket")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.statesExplored = DistributionSummary.builder("bookdiscount.solver.states")
+                .description("DP states or candidate solutions evaluated per solve (0 on a cache hit)")
+                .publishPercentileHistogram()
+                .register(registry);
+        PricingProperties.Budget.OnExceeded[] outcomes = PricingProperties.Budget.OnExceeded.values();
+        this.budgetExceeded = new Counter[outcomes.length];
+        for (PricingProperties.Budget.OnExceeded outcome : outcomes) {
+            budgetExceeded[outcome.ordinal()] = Counter.builder("bookdiscount.solver.budget.exceeded")
+                    .description("Exact solves abandoned over the solver budget, by what the basket got instead")
+                    .tag("outcome", outcome == PricingProperties.Budget.OnExceeded.REJECT ? "rejected" : "approximated")
+                    .register(registry);
+        }
+        this.coalesced = Counter.builder("bookdiscount.solver.coalesced")
+                .description("Solves not run because an identical one was in flight, whose outcome the caller waited for")
+                .register(registry);
+        this.admissionRejected = new Counter[Admission.values().length];
+        for (Admission reason : Admission.values()) {
+            admissionRejected[reason.ordinal()] = Counter.builder("bookdiscount.admission.rejected")
+                    .description("Requests refused with 429 before being priced, by reason")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Meters that record nothing, for services built outside of Spring.
+     */
+    public static PricingMetrics noop() {
+        return new PricingMetrics(new CompositeMeterRegistry());
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * Shape cache meters; they restart from zero whenever a new catalog version is published.
+     */
+    void bindShapeCache(BookPriceService service) {
+        FunctionCounter.builder("bookdiscount.shape.cache.requests", service, priced -> priced.shapeCacheStats().hitCount())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("bookdiscount.shape.cache.requests", service, priced -> priced.shapeCacheStats().missCount())
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("bookdiscount.shape.cache.evictions", service, priced -> priced.shapeCacheStats().evictionCount())
+                .register(registry);
+        Gauge.builder("bookdiscount.shape.cache.size", service, BookPriceService::shapeCacheSize)
+                .register(registry);
+    }
+
+    /**
+     * Basket session meters: sessions open, and sessions dropped because they expired or overflowed the bound.
+     */
+    void bindSessions(Cache<?, ?> sessions) {
+        Gauge.builder("bookdiscount.sessions.open", sessions, Cache::estimatedSize)
+                .register(registry);
+        FunctionCounter.builder("bookdiscount.sessions.evictions", sessions, open -> open.stats().evictionCount())
+                .register(registry);
+    }
+
+    /**
+     * The solver budget of the current catalog version (0 = unbounded).
+     */
+    void bindSolverBudget(CatalogService catalogs) {
+        Gauge.builder("bookdiscount.solver.budget.states", catalogs, current -> current.current().budget().maxStates())
+                .description("Most DP states one exact solve may explore")
+                .register(registry);
+        TimeGauge.builder("bookdiscount.solver.budget.time", catalogs, TimeUnit.NANOSECONDS,
+                        current -> current.current().budget().timeLimit().toNanos())
+                .description("Longest one exact solve may take")
+                .register(registry);
+    }
+
+    /**
+     * Solves currently in flight that concurrent identical calls would wait on.
+     */
+    void bindSingleFlight(SingleFlight<?, ?> flights) {
+        Gauge.builder("bookdiscount.solver.inflight", flights, SingleFlight::size)
+                .description("Coalescable solves currently running")
+                .register(registry);
+    }
+
+    /**
+     * Admission control meters: estimated cost of the baskets in flight, and clients with a token bucket.
+     */
+    void bindAdmission(AtomicLong inFlightCost, Cache<?, ?> buckets) {
+        Gauge.builder("bookdiscount.admission.inflight.cost", inFlightCost, AtomicLong::get)
+                .description("Estimated cost (lines x copies) of the baskets being priced")
+                .register(registry);
+        Gauge.builder("bookdiscount.admission.clients", buckets, Cache::estimatedSize)
+                .description("Clients holding a token bucket")
+                .register(registry);
+    }
+
+    /**
+     * Asynchronous pricing pool meters: baskets waiting for a thread, and threads pricing one.
+     */
+    void bindAsyncPricing(ThreadPoolExecutor pool) {
+        Gauge.builder("bookdiscount.pricing.async.queued", pool, executor -> executor.getQueue().size())
+                .description("Baskets waiting for a thread of the asynchronous pricing pool")
+                .register(registry);
+        Gauge.builder("bookdiscount.pricing.async.active", pool, ThreadPoolExecutor::getActiveCount)
+                .description("Threads of the asynchronous pricing pool pricing a basket")
+                .register(registry);
+    }
+
+    void recordPhase(Phase phase, long nanos) {
+        phaseTimers[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordSolve(int[] sortedCounts, long states) {
+        long quantity = 0;
+        for (int count : sortedCounts) {
+            quantity += count;
+        }
+        distinctTitles.record(sortedCounts.length);
+        totalQuantity.record(quantity);
+        statesExplored.record(states);
+    }
+
+    void recordTotal(int titles, long nanos) {
+        totalTimersByTitles[Math.max(1, Math.min(titles, MAX_TITLES_TAG))].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordBudgetExceeded(PricingProperties.Budget.OnExceeded outcome) {
+        budgetExceeded[outcome.ordinal()].increment();
+    }
+
+    void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    void recordAdmissionRejected(Admission reason) {
+        admissionRejected[reason.ordinal()].increment();
+    }
+
+    void recordRejection(InvalidBasketException ex) {
+        String reason = rejectionReason(ex.getMessage());
+        rejections.computeIfAbsent(reason, key -> Counter.builder("bookdiscount.basket.rejected")
+                        .description("Baskets refused by validation, by reason")
+                        .tag("reason", key)
+                        .register(registry))
+                .increment();
+    }
+
+    /**
+     * Maps the (partly formatted) InvalidBasketException messages to a bounded set of tag values.
+     */
+    static String rejectionReason(String message) {
+        if (message == null) {
+            return "other";
+        }
+        if (message.startsWith("Basket must not be null")) {
+            return "null-basket";
+        }
+        if (message.startsWith("Basket must contain at least one entry")) {
+            return "empty-basket";
+        }
+        if (message.startsWith("Basket item must not be null")) {
+            return "null-item";
+        }
+        if (message.startsWith("Book title")) {
+            return "blank-title";
+        }
+        if (message.endsWith("must not be null")) {
+            return "null-quantity";
+        }
+        if (message.endsWith("must not be negative")) {
+            return "negative-quantity";
+        }
+        if (message.startsWith("Basket must contain at least one book")) {
+            return "no-positive-quantity";
+        }
+        if (message.startsWith("Basket is too large to price")) {
+            return "over-budget";
+        }
+        return "other";
+    }
+}
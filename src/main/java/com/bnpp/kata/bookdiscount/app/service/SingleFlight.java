@@ -0,0 +1,66 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent computations of equal keys: the first caller computes, callers arriving
+ * while it runs wait for its outcome (value or exception) instead of computing it again.
+ * <p>
+ * The bookkeeping is one map of in-flight futures. Looking a key up is lock-free, and
+ * registering one only locks its hash bin for the time of a putIfAbsent, never while computing,
+ * so unrelated keys do not contend. A key leaves the map as soon as its computation ends:
+ * nothing is cached, a caller arriving afterwards computes again.
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * The value of 'computation' for 'key', computed by this caller or by a concurrent one.
+     */
+    V run(K key, Supplier<V> computation) {
+        CompletableFuture<V> flight = inFlight.get(key);
+        if (flight == null) {
+            CompletableFuture<V> own = new CompletableFuture<>();
+            flight = inFlight.putIfAbsent(key, own);
+            if (flight == null) {
+                return lead(key, own, computation);
+            }
+        }
+        try {
+            return flight.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> own, Supplier<V> computation) {
+        try {
+            V value = computation.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            own.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Computations currently running.
+     */
+    int size() {
+        return inFlight.size();
+    }
+}
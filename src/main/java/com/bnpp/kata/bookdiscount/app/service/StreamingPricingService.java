@@ -0,0 +1,175 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
+import com.bnpp.kata.bookdiscount.app.exception.TooManyRequestsException;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.model.BookPriceResponse;
+import com.bnpp.kata.bookdiscount.app.model.StreamPriceError;
+import com.bnpp.kata.bookdiscount.app.model.UserBasketRequest;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+@Service
+public class StreamingPricingService {
+
+    private static final String MALFORMED_LINE = "Malformed basket JSON";
+    private static final byte NEWLINE = '\n';
+    private static final int READ_BLOCK = 64 * 1024;
+
+    private final BookPriceService priceService;
+    private final ObjectMapper objectMapper;
+    private final AdmissionControl admission;
+    private final int maxLineLength;
+
+    @Autowired
+    public StreamingPricingService(BookPriceService priceService, ObjectMapper objectMapper,
+                                   AdmissionControl admission, PricingProperties properties) {
+        this.priceService = priceService;
+        this.objectMapper = objectMapper;
+        this.admission = admission;
+        this.maxLineLength = properties.streaming().maxLineBytes();
+    }
+
+    /**
+     * Longest line, in bytes and without its line break, that is parsed rather than answered with an error.
+     */
+    int maxLineLength() {
+        return maxLineLength;
+    }
+
+    /**
+     * Prices an NDJSON feed of {@link UserBasketRequest} line by line:
+     * - Only the current line is held in memory, whatever the feed length, and at most
+     *   'maxLineLength' bytes of it: a longer line is skipped up to its line break and answered with an error
+     * - Each line produces one {@link BookPriceResponse} or one {@link StreamPriceError}
+     * - Each basket holds its share of the admission budget while it is priced; a basket refused
+     *   for lack of budget is answered with an error, like an invalid one
+     * - Output is flushed whenever the input has nothing more buffered, so a slow
+     *   producer still sees results incrementally and a slow consumer blocks reading.
+     */
+    public void priceFeed(InputStream input, OutputStream output) throws IOException {
+        byte[] block = new byte[READ_BLOCK];
+        byte[] line = new byte[1024];
+        int lineLength = 0;
+        boolean overlong = false;
+        long lineNumber = 0;
+        int read;
+        while ((read = input.read(block)) != -1) {
+            int from = 0;
+            while (from < read) {
+                int to = from;
+                while (to < read && block[to] != NEWLINE) {
+                    to++;
+                }
+                if (!overlong && lineLength + (to - from) > maxLineLength) {
+                    overlong = true;
+                } else if (!overlong) {
+                    if (lineLength + (to - from) > line.length) {
+                        line = Arrays.copyOf(line, Math.min(maxLineLength,
+                                Math.max(2 * line.length, lineLength + (to - from))));
+                    }
+                    System.arraycopy(block, from, line, lineLength, to - from);
+                    lineLength += to - from;
+                }
+                if (to == read) {
+                    break;
+                }
+                writeResult(output, line, lineLength, overlong, ++lineNumber);
+                lineLength = 0;
+                overlong = false;
+                from = to + 1;
+            }
+            if (input.available() == 0) {
+                output.flush();
+            }
+        }
+        if (lineLength > 0 || overlong) {
+            writeResult(output, line, lineLength, overlong, ++lineNumber);
+        }
+        output.flush();
+    }
+
+    private void writeResult(OutputStream output, byte[] line, int length, boolean overlong, long lineNumber)
+            throws IOException {
+        Object result = priceLine(line, length, overlong, lineNumber, true, true);
+        if (result != null) {
+            output.write(objectMapper.writeValueAsBytes(result));
+            output.write(NEWLINE);
+        }
+    }
+
+    /**
+     * Result of one line of a feed, held in 'line[0, length)' without its line break, or null when it is blank;
+     * an 'overlong' line was cut short at 'maxLineLength' bytes and is answered with an error.
+     * Priced outside admission control, for the offline bulk pricer.
+     */
+    Object priceLine(byte[] line, int length, boolean overlong, long lineNumber, boolean echo) {
+        return priceLine(line, length, overlong, lineNumber, echo, false);
+    }
+
+    private Object priceLine(byte[] line, int length, boolean overlong, long lineNumber, boolean echo,
+                             boolean admitted) {
+        if (overlong) {
+            return new StreamPriceError(lineNumber, "Line is longer than %d bytes".formatted(maxLineLength));
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        if (isBlank(line, length)) {
+            return null;
+        }
+        return priceLine(line, 0, length, lineNumber, echo, admitted);
+    }
+
+    private static boolean isBlank(byte[] line, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!Character.isWhitespace(line[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Result of the line held in 'bytes[offset, offset + length)', as {@link #priceFeed} writes it;
+     * without 'echo' a priced line leaves out the request it answers.
+     */
+    private Object priceLine(byte[] bytes, int offset, int length, long lineNumber, boolean echo,
+                             boolean admitted) {
+        UserBasketRequest request;
+        try {
+            request = objectMapper.readValue(bytes, offset, length, UserBasketRequest.class);
+        } catch (JacksonException ex) {
+            return new StreamPriceError(lineNumber, MALFORMED_LINE);
+        }
+        return price(request, lineNumber, echo, admitted);
+    }
+
+    /**
+     * Prices one parsed line, holding an admission permit for its cost when 'admitted'; a line that is
+     * a JSON null, any invalid basket, or a basket refused admission fails on its own.
+     */
+    private Object price(UserBasketRequest request, long lineNumber, boolean echo, boolean admitted) {
+        List<BookItem> items = request == null ? null : request.bookItemList();
+        try (AdmissionControl.Permit permit = admitted
+                ? admission.acquire(AdmissionControl.cost(items)) : AdmissionControl.Permit.NONE) {
+            SolveContext context = new SolveContext();
+            double totalPrice = priceService.calculatePrice(items, context);
+            long minor = priceService.minorUnits(totalPrice);
+            return echo ? BookPriceResponse.of(request, totalPrice, minor, context.approximate())
+                    : BookPriceResponse.priceOnly(totalPrice, minor, context.approximate());
+        } catch (InvalidBasketException | TooManyRequestsException ex) {
+            return new StreamPriceError(lineNumber, ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.util.Arrays;
+
+/**
+ * Canonical shape of a basket: the positive quantities of its distinct titles, sorted descending,
+ * with the unit price of each title alongside (ties on quantity sorted by price, descending).
+ * Two baskets with the same shape always have the same price.
+ * The arrays are owned by the shape and must not be modified once wrapped.
+ */
+public record BasketShape(int[] counts, double[] unitPrices) {
+
+    public BasketShape {
+        if (counts.length != unitPrices.length) {
+            throw new IllegalArgumentException("One unit price is required per title");
+        }
+    }
+
+    /**
+     * Shape whose titles all cost 'unitPrice'.
+     */
+    public BasketShape(int[] counts, double unitPrice) {
+        this(counts, filled(counts.length, unitPrice));
+    }
+
+    private static double[] filled(int length, double unitPrice) {
+        double[] unitPrices = new double[length];
+        Arrays.fill(unitPrices, unitPrice);
+        return unitPrices;
+    }
+
+    /**
+     * Whether every title has the same unit price, so only the counts matter.
+     */
+    public boolean hasUniformPrice() {
+        for (int i = 1; i < unitPrices.length; i++) {
+            if (Double.compare(unitPrices[i], unitPrices[0]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof BasketShape shape
+                && Arrays.equals(counts, shape.counts)
+                && Arrays.equals(unitPrices, shape.unitPrices);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(counts) + Arrays.hashCode(unitPrices);
+    }
+
+    @Override
+    public String toString() {
+        return hasUniformPrice() && unitPrices.length > 0
+                ? Arrays.toString(counts) + " @ " + unitPrices[0]
+                : Arrays.toString(counts) + " @ " + Arrays.toString(unitPrices);
+    }
+}
@@ -0,0 +1,82 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.Arrays;
+
+/**
+ * Process-wide, thread-safe memo of solved basket shapes in front of another engine.
+ * Bounded by entry count with Caffeine's W-TinyLFU eviction, so the few hundred
+ * recurring shapes stay resident while one-off shapes are evicted first.
+ * Solves that {@link SolveContext#explains() explain} their grouping bypass the cache.
+ * Engines made with {@link #sharing} memoize other delegates in the same cache, within the same bound.
+ */
+public final class CachingPricingEngine implements PricingEngine {
+
+    private final PricingEngine delegate;
+    private final int partition;
+    private final Cache<Counts, Double> cache;
+
+    public CachingPricingEngine(PricingEngine delegate, long maximumSize) {
+        this(delegate, 0, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .executor(Runnable::run)
+                .recordStats()
+                .build());
+    }
+
+    private CachingPricingEngine(PricingEngine delegate, int partition, Cache<Counts, Double> cache) {
+        this.delegate = delegate;
+        this.partition = partition;
+        this.cache = cache;
+    }
+
+    /**
+     * An engine memoizing another delegate in this engine's cache, its shapes kept apart by a partition
+     * number, which must differ from that of every other engine sharing the cache (the first one is 0).
+     */
+    public CachingPricingEngine sharing(PricingEngine delegate, int partition) {
+        return new CachingPricingEngine(delegate, partition, cache);
+    }
+
+    @Override
+    public double price(int[] sortedCounts, SolveContext context) {
+        if (context.explains()) {
+            return delegate.price(sortedCounts, context);
+        }
+        return cache.get(new Counts(partition, sortedCounts), key -> delegate.price(key.sortedCounts(), context));
+    }
+
+    /**
+     * Hit, miss and eviction counters since startup, of every engine sharing the cache.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Entries of every engine sharing the cache.
+     */
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Cache key: each delegate prices every title alike, so its partition and the counts identify a solve.
+     */
+    private record Counts(int partition, int[] sortedCounts) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Counts key && partition == key.partition
+                    && Arrays.equals(sortedCounts, key.sortedCounts);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(sortedCounts) + partition;
+        }
+    }
+}
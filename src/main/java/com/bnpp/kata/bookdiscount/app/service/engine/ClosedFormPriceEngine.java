@@ -0,0 +1,65 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+/**
+ * Constant-time pricing for the kata's discount table.
+ * <p>
+ * Greedy layering of the sorted counts yields {@code c[k-1] - c[k]} groups of size k.
+ * With the kata discounts the only improvement over that histogram is turning every
+ * (5 + 3) pair into (4 + 4), which saves 2.50 per book price unit each time.
+ * Runs in O(distinct titles), whatever the quantities.
+ * <p>
+ * Only valid for tables with {@link DiscountTable#hasKataDiscounts() the kata discounts}
+ * and baskets of at most five titles; anything else goes to the fallback engine.
+ */
+public final class ClosedFormPriceEngine implements PricingEngine {
+
+    private static final int SERIES_SIZE = 5;
+
+    private final DiscountTable discountTable;
+    private final PricingEngine fallback;
+
+    public ClosedFormPriceEngine(DiscountTable discountTable, PricingEngine fallback) {
+        if (!discountTable.hasKataDiscounts()) {
+            throw new IllegalArgumentException("Closed form pricing requires the kata discount table");
+        }
+        this.discountTable = discountTable;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Whether the shape is priced in closed form rather than by the fallback.
+     */
+    public static boolean covers(int[] sortedCounts) {
+        return sortedCounts.length <= SERIES_SIZE;
+    }
+
+    @Override
+    public double price(int[] sortedCounts, SolveContext context) {
+        if (!covers(sortedCounts)) {
+            return fallback.price(sortedCounts, context);
+        }
+        context.addStatesExplored(1);
+        long[] groups = new long[SERIES_SIZE + 1];
+        for (int size = 1; size <= sortedCounts.length; size++) {
+            int next = size < sortedCounts.length ? sortedCounts[size] : 0;
+            groups[size] = (long) sortedCounts[size - 1] - next;
+        }
+        long swaps = Math.min(groups[5], groups[3]);
+        groups[5] -= swaps;
+        groups[3] -= swaps;
+        groups[4] += 2 * swaps;
+
+        long price = 0;
+        for (int size = 1; size <= SERIES_SIZE; size++) {
+            price += groups[size] * discountTable.groupCost(size);
+        }
+        if (context.explains()) {
+            Grouping grouping = new Grouping();
+            for (int size = 1; size <= SERIES_SIZE; size++) {
+                grouping.addUniform(discountTable, size, groups[size]);
+            }
+            context.recordGrouping(grouping);
+        }
+        return discountTable.minorUnits().toMajor(price);
+    }
+}
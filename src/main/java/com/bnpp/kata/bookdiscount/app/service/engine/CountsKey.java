@@ -0,0 +1,138 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+/**
+ * How the DP engines turn their working count vector into a memo key.
+ * <p>
+ * The titles are split into classes (one class per unit price; a single class for the uniform
+ * engines) and the counts are kept sorted inside each class, so titles of one class holding the
+ * same number of copies are interchangeable. Three encodings, tried in order:
+ * <ul>
+ * <li>POSITIONAL: one bit field per title holding its count, when titles * bits(max count) fit;</li>
+ * <li>HISTOGRAM: one bit field per (class, count) holding how many titles of the class have that
+ * many copies left, when the sum over classes of max count * bits(class size) fits. Hundreds of
+ * titles bought once or twice still fit in a handful of fields;</li>
+ * <li>COPIES: the key is only the number of copies left and the memo is keyed by the counts
+ * themselves ({@link CountsMemo}).</li>
+ * </ul>
+ * In all three the empty basket is key 0, and taking one copy of title 'i' lowers the key by
+ * {@link #decrement(int, int)}, so the solvers keep updating their key incrementally.
+ */
+final class CountsKey {
+
+    enum Mode { POSITIONAL, HISTOGRAM, COPIES }
+
+    private static final int KEY_BITS = 63;
+
+    private final Mode mode;
+    private final boolean positional;
+    private final int bitsPerTitle;
+    private final int[] classOf;
+    private final int[] fieldOffset;
+    private final int[] fieldWidth;
+
+    private CountsKey(Mode mode, int bitsPerTitle, int[] classOf, int[] fieldOffset, int[] fieldWidth) {
+        this.mode = mode;
+        this.positional = mode == Mode.POSITIONAL;
+        this.bitsPerTitle = bitsPerTitle;
+        this.classOf = classOf;
+        this.fieldOffset = fieldOffset;
+        this.fieldWidth = fieldWidth;
+    }
+
+    /**
+     * The most compact encoding of 'counts', whose titles [classStart[c], classStart[c + 1]) form class 'c'.
+     * A non-null 'forced' mode is used as long as it fits (COPIES always does), for tests.
+     */
+    static CountsKey of(int[] counts, int[] classStart, Mode forced) {
+        int titles = counts.length;
+        int classes = classStart.length - 1;
+        int maxCount = 0;
+        for (int count : counts) {
+            maxCount = Math.max(maxCount, count);
+        }
+        int bitsPerTitle = bits(maxCount);
+        boolean positional = (long) titles * bitsPerTitle <= KEY_BITS;
+        if (positional && (forced == null || forced == Mode.POSITIONAL)) {
+            return new CountsKey(Mode.POSITIONAL, bitsPerTitle, null, null, null);
+        }
+
+        int[] classOf = new int[titles];
+        int[] fieldOffset = new int[classes];
+        int[] fieldWidth = new int[classes];
+        long histogramBits = 0;
+        for (int c = 0; c < classes; c++) {
+            int classMax = 0;
+            for (int i = classStart[c]; i < classStart[c + 1]; i++) {
+                classOf[i] = c;
+                classMax = Math.max(classMax, counts[i]);
+            }
+            fieldOffset[c] = (int) Math.min(histogramBits, KEY_BITS);
+            fieldWidth[c] = bits(classStart[c + 1] - classStart[c]);
+            histogramBits += (long) classMax * fieldWidth[c];
+        }
+        if (histogramBits <= KEY_BITS && forced != Mode.COPIES) {
+            return new CountsKey(Mode.HISTOGRAM, 0, classOf, fieldOffset, fieldWidth);
+        }
+        return new CountsKey(Mode.COPIES, 0, null, null, null);
+    }
+
+    /**
+     * First index of [from, to), a range of counts sorted descending, holding at most 'count' copies
+     * ('to' when there is none). A binary search, so runs of hundreds of equal counts cost O(log n).
+     */
+    static int firstAtMost(int[] state, int from, int to, int count) {
+        if (from == to || state[from] <= count) {
+            return from;
+        }
+        int low = from + 1;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (state[middle] > count) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int bits(int value) {
+        return 32 - Integer.numberOfLeadingZeros(value);
+    }
+
+    boolean packed() {
+        return mode != Mode.COPIES;
+    }
+
+    long encode(int[] state) {
+        long key = 0L;
+        for (int i = 0; i < state.length; i++) {
+            key += weight(i, state[i]);
+        }
+        return key;
+    }
+
+    /**
+     * By how much the key drops when title 'i' goes from 'count' copies to 'count - 1'.
+     */
+    long decrement(int i, int count) {
+        if (positional) {
+            return 1L << (i * bitsPerTitle);
+        }
+        return switch (mode) {
+            case POSITIONAL -> 1L << (i * bitsPerTitle);
+            case HISTOGRAM -> weight(i, count) - weight(i, count - 1);
+            case COPIES -> 1L;
+        };
+    }
+
+    private long weight(int i, int count) {
+        return switch (mode) {
+            case POSITIONAL -> (long) count << (i * bitsPerTitle);
+            case HISTOGRAM -> count == 0 ? 0L
+                    : 1L << (fieldOffset[classOf[i]] + (count - 1) * fieldWidth[classOf[i]]);
+            case COPIES -> count;
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memo table of a DP over count vectors: a primitive {@link LongDoubleHashMap} on the packed
+ * key when the {@link CountsKey} is packed, a hash map on a copy of the counts otherwise.
+ */
+final class CountsMemo {
+
+    private final LongDoubleHashMap packed;
+    private final Map<Counts, Double> unpacked;
+
+    CountsMemo(CountsKey key) {
+        this.packed = key.packed() ? new LongDoubleHashMap(64) : null;
+        this.unpacked = key.packed() ? null : new HashMap<>();
+    }
+
+    /**
+     * Price memoized for the state 'state', whose key is 'key', or NaN when there is none.
+     */
+    double get(long key, int[] state) {
+        if (packed != null) {
+            return packed.get(key, Double.NaN);
+        }
+        Double price = unpacked.get(new Counts(state));
+        return price != null ? price : Double.NaN;
+    }
+
+    void put(long key, int[] state, double price) {
+        if (packed != null) {
+            packed.put(key, price);
+        } else {
+            unpacked.put(new Counts(state.clone()), price);
+        }
+    }
+
+    int size() {
+        return packed != null ? packed.size() : unpacked.size();
+    }
+
+    private record Counts(int[] counts) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Counts key && Arrays.equals(counts, key.counts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(counts);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable price list for groups of distinct titles, compiled into flat arrays
+ * so pricing never looks up a map or unboxes a rate.
+ * Group sizes without an entry get no discount, exactly like
+ * {@code DISCOUNTS.getOrDefault(groupSize, 0.0)} used to.
+ * <p>
+ * Amounts are exact {@link MinorUnits minor units} and discounts exact parts per million:
+ * a group's price is its list price times its price factor, rounded once to a minor unit
+ * with the table's rounding mode.
+ */
+public final class DiscountTable {
+
+    /**
+     * The kata's five-title series discounts.
+     */
+    public static final Map<Integer, Double> KATA_DISCOUNTS = Map.of(
+            1, 0.00,
+            2, 0.05,
+            3, 0.10,
+            4, 0.20,
+            5, 0.25
+    );
+
+    private static final long PARTS_PER_MILLION = 1_000_000;
+
+    private static final long[] KATA_FACTORS = factors(KATA_DISCOUNTS);
+
+    private final double bookPrice;
+    private final long bookPriceMinor;
+    private final MinorUnits minorUnits;
+    private final long[] priceFactors;
+    private final long[] groupCosts;
+
+    public DiscountTable(double bookPrice, Map<Integer, Double> discounts) {
+        this(bookPrice, discounts, MinorUnits.DEFAULT);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the book price has more decimals than the minor units,
+     *                                  or a discount more than six
+     */
+    public DiscountTable(double bookPrice, Map<Integer, Double> discounts, MinorUnits minorUnits) {
+        this(bookPrice, factors(discounts), minorUnits);
+    }
+
+    private DiscountTable(double bookPrice, long[] priceFactors, MinorUnits minorUnits) {
+        if (!minorUnits.isExact(bookPrice)) {
+            throw new IllegalArgumentException("Book price %s must have at most %d decimals"
+                    .formatted(bookPrice, minorUnits.scale()));
+        }
+        this.bookPrice = bookPrice;
+        this.bookPriceMinor = minorUnits.toMinor(bookPrice);
+        this.minorUnits = minorUnits;
+        this.priceFactors = priceFactors;
+        this.groupCosts = new long[priceFactors.length];
+        for (int size = 1; size < groupCosts.length; size++) {
+            groupCosts[size] = groupPrice(size * bookPriceMinor, size);
+        }
+    }
+
+    /**
+     * Same discounts and minor units for another book price.
+     */
+    public DiscountTable withBookPrice(double otherBookPrice) {
+        return new DiscountTable(otherBookPrice, priceFactors, minorUnits);
+    }
+
+    /**
+     * Fraction of the list price paid per group size, in parts per million.
+     */
+    private static long[] factors(Map<Integer, Double> discounts) {
+        int maxGroupSize = discounts.keySet().stream()
+                .mapToInt(Integer::intValue)
+                .max()
+                .orElse(0);
+        long[] factors = new long[maxGroupSize + 1];
+        Arrays.fill(factors, PARTS_PER_MILLION);
+        discounts.forEach((size, discount) -> {
+            BigDecimal partsPerMillion = BigDecimal.valueOf(discount).movePointRight(6);
+            if (partsPerMillion.stripTrailingZeros().scale() > 0) {
+                throw new IllegalArgumentException("Discount %s for %d titles must have at most 6 decimals"
+                        .formatted(discount, size));
+            }
+            factors[size] = PARTS_PER_MILLION - partsPerMillion.longValue();
+        });
+        return factors;
+    }
+
+    /**
+     * Price in minor units of one group made of 'groupSize' distinct titles.
+     */
+    public long groupCost(int groupSize) {
+        if (groupSize < groupCosts.length) {
+            return groupCosts[groupSize];
+        }
+        return groupSize * bookPriceMinor;
+    }
+
+    /**
+     * Price in minor units of one group of 'groupSize' distinct titles listed at 'listPrice' minor units.
+     */
+    public long groupPrice(long listPrice, int groupSize) {
+        if (groupSize >= priceFactors.length) {
+            return listPrice;
+        }
+        return minorUnits.divide(listPrice * priceFactors[groupSize], PARTS_PER_MILLION);
+    }
+
+    /**
+     * The book price in major units.
+     */
+    public double bookPrice() {
+        return bookPrice;
+    }
+
+    public long bookPriceMinor() {
+        return bookPriceMinor;
+    }
+
+    public MinorUnits minorUnits() {
+        return minorUnits;
+    }
+
+    /**
+     * Largest group size the table prices explicitly; bigger groups are never cheaper than singles.
+     */
+    public int maxGroupSize() {
+        return groupCosts.length - 1;
+    }
+
+    /**
+     * Whether the discount rates are exactly the kata's and no group price needed rounding,
+     * so group prices keep the kata's exact proportions.
+     */
+    public boolean hasKataDiscounts() {
+        if (!Arrays.equals(priceFactors, KATA_FACTORS)) {
+            return false;
+        }
+        for (int size = 1; size < priceFactors.length; size++) {
+            if (size * bookPriceMinor * priceFactors[size] % PARTS_PER_MILLION != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+/**
+ * Fast upper bound for baskets the exact engines could not price within their budget.
+ * <p>
+ * The basket, sorted by count, is peeled into layers: the first 's' titles hold
+ * 'counts[s - 1] - counts[s]' copies of one layer of 's' distinct titles.
+ * Each layer is then cut, in the shape's order, into consecutive groups of at most the table's
+ * largest discounted group size, choosing the cut points by a small DP over the layer.
+ * Every group is priced in minor units exactly like the exact engines price it, so the result
+ * is the price of an actual split of the basket: never below the optimum, and reached in
+ * O(titles² · group size) time whatever the quantities.
+ */
+public final class GreedyPriceEngine {
+
+    private final DiscountTable discountTable;
+    private final int maxGroupSize;
+
+    public GreedyPriceEngine(DiscountTable discountTable) {
+        this.discountTable = discountTable;
+        this.maxGroupSize = Math.max(1, discountTable.maxGroupSize());
+    }
+
+    /**
+     * Price of the split described above, for a shape sorted by count descending.
+     */
+    public double price(BasketShape shape, SolveContext context) {
+        int[] counts = shape.counts();
+        int titles = counts.length;
+        long[] prefixPrices = new long[titles + 1];
+        for (int i = 0; i < titles; i++) {
+            prefixPrices[i + 1] = prefixPrices[i] + discountTable.minorUnits().toMinor(shape.unitPrices()[i]);
+        }
+        Grouping grouping = context.explains() ? new Grouping() : null;
+        long[] best = new long[titles + 1];
+        int[] cut = new int[titles + 1];
+        long total = 0L;
+        for (int layer = titles; layer > 0; layer--) {
+            long sets = counts[layer - 1] - (layer < titles ? counts[layer] : 0);
+            if (sets <= 0) {
+                continue;
+            }
+            for (int end = 1; end <= layer; end++) {
+                best[end] = Long.MAX_VALUE;
+                for (int size = 1; size <= Math.min(maxGroupSize, end); size++) {
+                    long price = best[end - size]
+                            + discountTable.groupPrice(prefixPrices[end] - prefixPrices[end - size], size);
+                    if (price < best[end]) {
+                        best[end] = price;
+                        cut[end] = end - size;
+                    }
+                }
+            }
+            total += sets * best[layer];
+            if (grouping != null) {
+                for (int end = layer; end > 0; end = cut[end]) {
+                    long listPrice = prefixPrices[end] - prefixPrices[cut[end]];
+                    int size = end - cut[end];
+                    grouping.addMinor(discountTable, size, sets, listPrice, discountTable.groupPrice(listPrice, size));
+                }
+            }
+        }
+        context.addStatesExplored(titles);
+        if (grouping != null) {
+            context.recordGrouping(grouping);
+        }
+        return discountTable.minorUnits().toMajor(total);
+    }
+}
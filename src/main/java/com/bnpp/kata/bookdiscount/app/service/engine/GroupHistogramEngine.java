@@ -0,0 +1,287 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.util.Arrays;
+
+/**
+ * Iterative solver whose work depends on the number of group sizes, not on the quantities.
+ * <p>
+ * A basket is fully described, for pricing purposes, by K = min(titles, table size) numbers:
+ * the copies left once the j largest titles are set aside, {@code U[j] = total - (c[0] + ... + c[j-1])}.
+ * A histogram m[k] of groups of size k can be laid out over the titles iff
+ * (Gale-Ryser) {@code sum over k > j of (k - j) * m[k] <= U[j]} for every j < K,
+ * with singles filling whatever is left. Pricing is therefore a packing integer program
+ * in at most K - 1 variables: maximize the saving of groups of size 2..K over selling singles.
+ * <p>
+ * Its LP relaxation is solved exactly by visiting every basis, and by the proximity theorem
+ * (Cook, Gerards, Schrijver, Tardos) an integer optimum lies within {@code (K - 1) * delta}
+ * of the LP optimum in every coordinate, delta being the largest subdeterminant of the constraint
+ * matrix. That window is enumerated with an odometer, the smallest group size being filled
+ * greedily. Time and memory are O(1) in the quantities: about 52^3 candidate histograms for K = 5,
+ * plus O(titles) to read the shape. No recursion is involved.
+ * <p>
+ * Tables pricing groups of more than {@value #MAX_GROUP_SIZE} titles go to the fallback engine.
+ */
+public final class GroupHistogramEngine implements PricingEngine {
+
+    public static final int MAX_GROUP_SIZE = 5;
+
+    /**
+     * Largest absolute subdeterminant of the constraint matrix for K = 0..5, computed offline.
+     */
+    private static final int[] MAX_SUBDETERMINANT = {0, 0, 2, 3, 4, 6};
+
+    private static final double EPSILON = 1e-7;
+
+    private final DiscountTable discountTable;
+    private final PricingEngine fallback;
+
+    public GroupHistogramEngine(DiscountTable discountTable, PricingEngine fallback) {
+        this.discountTable = discountTable;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public double price(int[] sortedCounts, SolveContext context) {
+        int groupLimit = Math.min(sortedCounts.length, discountTable.maxGroupSize());
+        if (groupLimit > MAX_GROUP_SIZE) {
+            return fallback.price(sortedCounts, context);
+        }
+        long total = 0;
+        for (int count : sortedCounts) {
+            total += count;
+        }
+        long[] capacity = new long[Math.max(groupLimit, 1)];
+        long remaining = total;
+        for (int j = 0; j < capacity.length; j++) {
+            capacity[j] = remaining;
+            remaining -= sortedCounts[j];
+        }
+        int[] sizes = savingGroupSizes(groupLimit);
+        long[] groups = solve(sizes, capacity, context);
+
+        long singles = total;
+        long price = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            singles -= sizes[i] * groups[i];
+            price += groups[i] * discountTable.groupCost(sizes[i]);
+        }
+        if (context.explains()) {
+            Grouping grouping = new Grouping();
+            for (int i = 0; i < sizes.length; i++) {
+                grouping.addUniform(discountTable, sizes[i], groups[i]);
+            }
+            grouping.addUniform(discountTable, 1, singles);
+            context.recordGrouping(grouping);
+        }
+        return discountTable.minorUnits().toMajor(singles * discountTable.groupCost(1) + price);
+    }
+
+    /**
+     * Group sizes that are cheaper than the same books sold as singles.
+     */
+    private int[] savingGroupSizes(int groupLimit) {
+        long single = discountTable.groupCost(1);
+        int[] sizes = new int[Math.max(groupLimit - 1, 0)];
+        int found = 0;
+        for (int size = 2; size <= groupLimit; size++) {
+            if (size * single - discountTable.groupCost(size) > 0) {
+                sizes[found++] = size;
+            }
+        }
+        return Arrays.copyOf(sizes, found);
+    }
+
+    /**
+     * Best number of groups for each size in 'sizes' (same order).
+     */
+    private long[] solve(int[] sizes, long[] capacity, SolveContext context) {
+        int variables = sizes.length;
+        long[] best = new long[variables];
+        if (variables == 0) {
+            return best;
+        }
+        double[] saving = new double[variables];
+        for (int i = 0; i < variables; i++) {
+            saving[i] = sizes[i] * discountTable.groupCost(1) - discountTable.groupCost(sizes[i]);
+        }
+        double[] relaxed = solveRelaxation(sizes, saving, capacity);
+
+        long radius = (long) variables * MAX_SUBDETERMINANT[capacity.length] + 1;
+        long[] low = new long[variables];
+        long[] high = new long[variables];
+        for (int i = 0; i < variables; i++) {
+            low[i] = Math.max(0, (long) Math.floor(relaxed[i]) - radius);
+            high[i] = Math.min(maxAlone(sizes[i], capacity), (long) Math.ceil(relaxed[i]) + radius);
+        }
+
+        long[] candidate = low.clone();
+        double bestSaving = -1;
+        long candidates = 0;
+        while (true) {
+            candidates++;
+            candidate[0] = fillSmallestSize(sizes, candidate, capacity);
+            if (candidate[0] >= 0) {
+                double total = 0;
+                for (int i = 0; i < variables; i++) {
+                    total += saving[i] * candidate[i];
+                }
+                if (total > bestSaving) {
+                    bestSaving = total;
+                    System.arraycopy(candidate, 0, best, 0, variables);
+                }
+            }
+            int digit = 1;
+            while (digit < variables && candidate[digit] >= high[digit]) {
+                candidate[digit] = low[digit];
+                digit++;
+            }
+            if (digit >= variables) {
+                context.addStatesExplored(candidates);
+                return best;
+            }
+            candidate[digit]++;
+        }
+    }
+
+    /**
+     * Largest count of the first size compatible with the others, or -1 when they alone overflow.
+     */
+    private static long fillSmallestSize(int[] sizes, long[] counts, long[] capacity) {
+        long fill = Long.MAX_VALUE;
+        for (int j = 0; j < capacity.length; j++) {
+            long left = capacity[j];
+            for (int i = 1; i < sizes.length; i++) {
+                left -= (long) Math.max(0, sizes[i] - j) * counts[i];
+            }
+            if (left < 0) {
+                return -1;
+            }
+            int weight = Math.max(0, sizes[0] - j);
+            if (weight > 0) {
+                fill = Math.min(fill, left / weight);
+            }
+        }
+        return fill;
+    }
+
+    private static long maxAlone(int size, long[] capacity) {
+        long max = Long.MAX_VALUE;
+        for (int j = 0; j < capacity.length && j < size; j++) {
+            max = Math.min(max, capacity[j] / (size - j));
+        }
+        return max;
+    }
+
+    /**
+     * Optimal vertex of the LP relaxation, found by solving every choice of tight constraints.
+     */
+    private static double[] solveRelaxation(int[] sizes, double[] saving, long[] capacity) {
+        int variables = sizes.length;
+        int constraints = capacity.length + variables;
+        double[][] rows = new double[constraints][variables];
+        double[] bounds = new double[constraints];
+        for (int j = 0; j < capacity.length; j++) {
+            for (int i = 0; i < variables; i++) {
+                rows[j][i] = Math.max(0, sizes[i] - j);
+            }
+            bounds[j] = capacity[j];
+        }
+        for (int i = 0; i < variables; i++) {
+            rows[capacity.length + i][i] = -1;
+        }
+
+        double[] best = new double[variables];
+        double bestValue = 0;
+        int[] tight = new int[variables];
+        for (int i = 0; i < variables; i++) {
+            tight[i] = i;
+        }
+        double[][] system = new double[variables][variables + 1];
+        while (true) {
+            for (int r = 0; r < variables; r++) {
+                System.arraycopy(rows[tight[r]], 0, system[r], 0, variables);
+                system[r][variables] = bounds[tight[r]];
+            }
+            double[] vertex = gaussianElimination(system);
+            if (vertex != null && isFeasible(vertex, rows, bounds)) {
+                double value = 0;
+                for (int i = 0; i < variables; i++) {
+                    value += saving[i] * vertex[i];
+                }
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = vertex;
+                }
+            }
+            if (!nextCombination(tight, constraints)) {
+                return best;
+            }
+        }
+    }
+
+    private static boolean isFeasible(double[] point, double[][] rows, double[] bounds) {
+        for (int r = 0; r < rows.length; r++) {
+            double lhs = 0;
+            for (int i = 0; i < point.length; i++) {
+                lhs += rows[r][i] * point[i];
+            }
+            if (lhs > bounds[r] + EPSILON * Math.max(1, Math.abs(bounds[r]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves the square system in place (last column is the right-hand side); null when singular.
+     */
+    private static double[] gaussianElimination(double[][] system) {
+        int n = system.length;
+        for (int column = 0; column < n; column++) {
+            int pivot = column;
+            for (int r = column + 1; r < n; r++) {
+                if (Math.abs(system[r][column]) > Math.abs(system[pivot][column])) {
+                    pivot = r;
+                }
+            }
+            if (Math.abs(system[pivot][column]) < EPSILON) {
+                return null;
+            }
+            double[] swap = system[pivot];
+            system[pivot] = system[column];
+            system[column] = swap;
+            for (int r = 0; r < n; r++) {
+                if (r != column) {
+                    double factor = system[r][column] / system[column][column];
+                    for (int c = column; c <= n; c++) {
+                        system[r][c] -= factor * system[column][c];
+                    }
+                }
+            }
+        }
+        double[] solution = new double[n];
+        for (int i = 0; i < n; i++) {
+            solution[i] = system[i][n] / system[i][i];
+        }
+        return solution;
+    }
+
+    /**
+     * Advances 'combination' to the next k-subset of [0, n) in lexicographic order.
+     */
+    private static boolean nextCombination(int[] combination, int n) {
+        int k = combination.length;
+        int i = k - 1;
+        while (i >= 0 && combination[i] == n - k + i) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        combination[i]++;
+        for (int j = i + 1; j < k; j++) {
+            combination[j] = combination[j - 1] + 1;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * How an optimal price splits a basket into groups of distinct titles.
+ * <p>
+ * Identical groups (same number of titles, same list price) are counted together as
+ * 'sets'. Summing {@code sets * price} over the groups gives back the basket's price.
+ */
+public final class Grouping {
+
+    /**
+     * 'sets' groups of 'titles' distinct titles, each listed at 'listPrice' and sold at 'price'.
+     */
+    public record Group(int titles, long sets, double listPrice, double price) {
+
+        public double saving() {
+            return listPrice - price;
+        }
+    }
+
+    private final List<Group> groups = new ArrayList<>();
+
+    /**
+     * Adds groups whose titles all cost the table's book price.
+     */
+    void addUniform(DiscountTable table, int titles, long sets) {
+        addMinor(table, titles, sets, titles * table.bookPriceMinor(), table.groupCost(titles));
+    }
+
+    /**
+     * Adds groups whose list price and price are given in the table's minor units.
+     */
+    void addMinor(DiscountTable table, int titles, long sets, long listPrice, long price) {
+        MinorUnits minorUnits = table.minorUnits();
+        add(titles, sets, minorUnits.toMajor(listPrice), minorUnits.toMajor(price));
+    }
+
+    private void add(int titles, long sets, double listPrice, double price) {
+        if (sets == 0) {
+            return;
+        }
+        for (int i = 0; i < groups.size(); i++) {
+            Group group = groups.get(i);
+            if (group.titles() == titles && Double.compare(group.listPrice(), listPrice) == 0) {
+                groups.set(i, new Group(titles, group.sets() + sets, listPrice, price));
+                return;
+            }
+        }
+        groups.add(new Group(titles, sets, listPrice, price));
+    }
+
+    /**
+     * The groups, largest first, then by list price descending.
+     */
+    public List<Group> groups() {
+        return groups.stream()
+                .sorted(Comparator.comparingInt(Group::titles).thenComparingDouble(Group::listPrice).reversed())
+                .toList();
+    }
+
+    @Override
+    public String toString() {
+        return groups().toString();
+    }
+}
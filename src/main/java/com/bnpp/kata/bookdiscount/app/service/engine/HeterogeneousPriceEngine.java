@@ -0,0 +1,350 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.util.Arrays;
+
+/**
+ * Exact DP for baskets whose titles do not all cost the same.
+ * <p>
+ * A group's price is the sum of its titles' unit prices times the table's price factor
+ * for the group size, rounded to a minor unit, so which titles are grouped together matters,
+ * not only how many. Prices are added up in exact minor units.
+ * Titles of equal price are interchangeable, so they form a price class whose counts
+ * are kept sorted, exactly like the uniform engines keep the whole basket sorted:
+ * a group is a number of titles taken per class, always from the largest counts of
+ * the class (decremented in canonical order so no re-sort is needed). Two titles with
+ * the same price and count are therefore never told apart.
+ * <p>
+ * Every remaining copy has to end up in some group, so the group holding a title of the
+ * first non-empty class can be formed first. Groups never exceed the table's largest
+ * discounted group size (larger groups are never cheaper than singles).
+ * The state is encoded by a {@link CountsKey}: one bit field per title, or one per
+ * (price class, count) for baskets of many titles, so a basket of hundreds of titles bought
+ * once or twice at a few prices keeps a small state space and a primitive memo table.
+ * <p>
+ * The DP runs on an explicit stack of states, so baskets of any number of copies are solved
+ * without deepening the thread's stack.
+ * <p>
+ * The solver reads the optimal grouping off its memo table on request: in each state,
+ * the group whose price plus the memoized price of what remains equals the state's price
+ * is the one that was kept.
+ */
+public final class HeterogeneousPriceEngine {
+
+    private final DiscountTable discountTable;
+    private final int maxGroupSize;
+    private final CountsKey.Mode keyMode;
+
+    public HeterogeneousPriceEngine(DiscountTable discountTable) {
+        this(discountTable, null);
+    }
+
+    /**
+     * An engine that encodes its states with 'keyMode' whenever that fits, for tests.
+     */
+    HeterogeneousPriceEngine(DiscountTable discountTable, CountsKey.Mode keyMode) {
+        this.discountTable = discountTable;
+        this.maxGroupSize = Math.max(1, discountTable.maxGroupSize());
+        this.keyMode = keyMode;
+    }
+
+    public double price(BasketShape shape, SolveContext context) {
+        if (shape.counts().length == 0) {
+            return 0.0;
+        }
+        ClassSolver solver = new ClassSolver(shape, context);
+        double price = solver.solve(solver.initialKey());
+        context.addStatesExplored(solver.memo.size());
+        if (context.explains()) {
+            context.recordGrouping(solver.grouping(solver.initialKey(), price));
+        }
+        return discountTable.minorUnits().toMajor(price);
+    }
+
+    /**
+     * Per-call scratch state: titles reordered by price class, the working counts
+     * (sorted descending inside each class), the memo table and the stack of states being solved.
+     * <p>
+     * A group is the number of titles it takes from each class, from the first non-empty class
+     * (which gives at least one) onwards. The groups of a state are visited in lexicographic order
+     * of those numbers, each one taken from the largest counts of its class.
+     */
+    private final class ClassSolver {
+
+        private static final int INITIAL_DEPTH = 64;
+
+        private final int[] state;
+        private final int[] classStart;
+        private final long[] classPrice;
+        private final CountsKey keys;
+        private final SolveContext context;
+        private final CountsMemo memo;
+        private Frame[] frames = new Frame[INITIAL_DEPTH];
+
+        private ClassSolver(BasketShape shape, SolveContext context) {
+            int titles = shape.counts().length;
+            // Sort title indexes by unit price then count, both descending.
+            Integer[] byPrice = new Integer[titles];
+            for (int i = 0; i < titles; i++) {
+                byPrice[i] = i;
+            }
+            double[] unitPrices = shape.unitPrices();
+            int[] counts = shape.counts();
+            Arrays.sort(byPrice, (left, right) -> {
+                int byUnitPrice = Double.compare(unitPrices[right], unitPrices[left]);
+                return byUnitPrice != 0 ? byUnitPrice : Integer.compare(counts[right], counts[left]);
+            });
+
+            this.state = new int[titles];
+            int[] starts = new int[titles + 1];
+            double[] prices = new double[titles];
+            int classes = 0;
+            for (int i = 0; i < titles; i++) {
+                int title = byPrice[i];
+                state[i] = counts[title];
+                if (i == 0 || Double.compare(unitPrices[title], prices[classes - 1]) != 0) {
+                    starts[classes] = i;
+                    prices[classes++] = unitPrices[title];
+                }
+            }
+            starts[classes] = titles;
+            this.classStart = Arrays.copyOf(starts, classes + 1);
+            this.classPrice = new long[classes];
+            for (int i = 0; i < classes; i++) {
+                classPrice[i] = discountTable.minorUnits().toMinor(prices[i]);
+            }
+            this.keys = CountsKey.of(state, classStart, keyMode);
+            this.context = context;
+            this.memo = new CountsMemo(keys);
+        }
+
+        private long initialKey() {
+            return keys.encode(state);
+        }
+
+        /**
+         * Cheapest price, in minor units, of the current state, whose packed form is 'key'.
+         * Each frame tries its groups in turn: taking a group either resolves at once (empty or
+         * memoized remainder) or pushes the remainder, whose price is added to the group's once
+         * it is popped. Leaves the state as it found it.
+         */
+        private double solve(long key) {
+            if (key == 0L) {
+                return 0.0;
+            }
+            double cached = memo.get(key, state);
+            if (!Double.isNaN(cached)) {
+                return cached;
+            }
+            int depth = 0;
+            push(depth++, key);
+            double remainder = Double.NaN;
+            while (true) {
+                Frame frame = frames[depth - 1];
+                if (!Double.isNaN(remainder)) {
+                    giveBack(frame);
+                    frame.bestPrice = Math.min(frame.bestPrice, frame.groupPrice + remainder);
+                    remainder = Double.NaN;
+                    if (!nextGroup(frame)) {
+                        memo.put(frame.key, state, frame.bestPrice);
+                        remainder = frame.bestPrice;
+                        if (--depth == 0) {
+                            return remainder;
+                        }
+                        continue;
+                    }
+                }
+                long remainingKey = take(frame);
+                remainder = remainingKey == 0L ? 0.0 : memo.get(remainingKey, state);
+                if (Double.isNaN(remainder)) {
+                    push(depth++, remainingKey);
+                }
+            }
+        }
+
+        /**
+         * Opens the frame of a state not memoized yet, charging it to the budget,
+         * on its first group: one title of its first non-empty class.
+         */
+        private void push(int depth, long key) {
+            context.charge();
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth * 2);
+            }
+            Frame frame = frames[depth];
+            if (frame == null) {
+                frame = frames[depth] = new Frame(maxGroupSize);
+            }
+            frame.key = key;
+            frame.bestPrice = Double.MAX_VALUE;
+            firstGroup(frame);
+        }
+
+        private void firstGroup(Frame frame) {
+            int first = 0;
+            while (state[classStart[first]] == 0) {
+                first++;
+            }
+            frame.entries = 1;
+            frame.classes[0] = first;
+            frame.taken[0] = 1;
+        }
+
+        /**
+         * Titles of class 'index' with copies left.
+         */
+        private int available(int index) {
+            int start = classStart[index];
+            return CountsKey.firstAtMost(state, start, classStart[index + 1], 0) - start;
+        }
+
+        /**
+         * Moves the frame to the group after its current one, the state being given back:
+         * the deepest class that can give one title more does, and the classes after it give none.
+         *
+         * @return false once every group of the state has been tried
+         */
+        private boolean nextGroup(Frame frame) {
+            int entry = frame.entries - 1;
+            int size = 0;
+            for (int i = 0; i < frame.entries; i++) {
+                size += frame.taken[i];
+            }
+            int first = frame.classes[0];
+            for (int index = classPrice.length - 1; index >= first; index--) {
+                boolean holds = entry >= 0 && frame.classes[entry] == index;
+                int taken = holds ? frame.taken[entry] : 0;
+                if (size < maxGroupSize && taken < available(index)) {
+                    if (holds) {
+                        frame.taken[entry]++;
+                        frame.entries = entry + 1;
+                    } else {
+                        frame.classes[entry + 1] = index;
+                        frame.taken[entry + 1] = 1;
+                        frame.entries = entry + 2;
+                    }
+                    return true;
+                }
+                if (holds) {
+                    size -= taken;
+                    entry--;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Takes the frame's current group out of the state, recording its price and how to give it back.
+         *
+         * @return the key of what remains
+         */
+        private long take(Frame frame) {
+            long key = frame.key;
+            long listPrice = 0L;
+            int size = 0;
+            for (int i = 0; i < frame.entries; i++) {
+                int index = frame.classes[i];
+                int taken = frame.taken[i];
+                int start = classStart[index];
+                int boundary = state[start + taken - 1];
+                int runStart = start + taken - 1;
+                while (runStart > start && state[runStart - 1] == boundary) {
+                    runStart--;
+                }
+                int runEnd = CountsKey.firstAtMost(state, start + taken, classStart[index + 1], boundary - 1);
+                int fromRun = start + taken - runStart;
+                frame.runStart[i] = runStart;
+                frame.tailFrom[i] = runEnd - fromRun;
+                frame.tailTo[i] = runEnd;
+                key -= shift(start, runStart, runEnd - fromRun, runEnd, -1);
+                listPrice += taken * classPrice[index];
+                size += taken;
+            }
+            frame.size = size;
+            frame.listPrice = listPrice;
+            frame.groupPrice = discountTable.groupPrice(listPrice, size);
+            return key;
+        }
+
+        /**
+         * Puts the group {@link #take} took back into the state.
+         */
+        private void giveBack(Frame frame) {
+            for (int i = frame.entries - 1; i >= 0; i--) {
+                shift(classStart[frame.classes[i]], frame.runStart[i], frame.tailFrom[i], frame.tailTo[i], +1);
+            }
+        }
+
+        /**
+         * Replays the choices solve() kept from the state 'key', worth 'price', down to the empty basket.
+         * Leaves the state empty.
+         */
+        private Grouping grouping(long key, double price) {
+            Grouping grouping = new Grouping();
+            Frame frame = new Frame(maxGroupSize);
+            while (key != 0L) {
+                frame.key = key;
+                firstGroup(frame);
+                while (true) {
+                    long remainingKey = take(frame);
+                    double rest = remainingKey == 0L ? 0.0 : memo.get(remainingKey, state);
+                    if (frame.groupPrice + rest == price) {
+                        grouping.addMinor(discountTable, frame.size, 1, frame.listPrice, frame.groupPrice);
+                        key = remainingKey;
+                        price = rest;
+                        break;
+                    }
+                    giveBack(frame);
+                    if (!nextGroup(frame)) {
+                        throw new IllegalStateException("No memoized choice explains price " + price);
+                    }
+                }
+            }
+            return grouping;
+        }
+
+        /**
+         * Adds 'step' to the counts in [from, to) and [tailFrom, tailTo): the largest counts
+         * of a class, then the last titles of the run of equal counts straddling the boundary,
+         * so the class stays sorted. Returns the amount by which the key changes.
+         */
+        private long shift(int from, int to, int tailFrom, int tailTo, int step) {
+            long delta = 0L;
+            for (int i = from; i < to; i++) {
+                delta += keys.decrement(i, step < 0 ? state[i] : state[i] + 1);
+                state[i] += step;
+            }
+            for (int i = tailFrom; i < tailTo; i++) {
+                delta += keys.decrement(i, step < 0 ? state[i] : state[i] + 1);
+                state[i] += step;
+            }
+            return delta;
+        }
+    }
+
+    /**
+     * One state being solved: its key, its best price so far, and the group it last took, as the
+     * number of titles 'taken' from each of its first 'entries' 'classes', with how to give it back.
+     */
+    private static final class Frame {
+
+        private long key;
+        private double bestPrice;
+        private int entries;
+        private final int[] classes;
+        private final int[] taken;
+        private final int[] runStart;
+        private final int[] tailFrom;
+        private final int[] tailTo;
+        private int size;
+        private long listPrice;
+        private long groupPrice;
+
+        private Frame(int maxGroupSize) {
+            this.classes = new int[maxGroupSize];
+            this.taken = new int[maxGroupSize];
+            this.runStart = new int[maxGroupSize];
+            this.tailFrom = new int[maxGroupSize];
+            this.tailTo = new int[maxGroupSize];
+        }
+    }
+}
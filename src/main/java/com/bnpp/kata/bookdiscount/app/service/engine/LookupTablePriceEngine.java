@@ -0,0 +1,122 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed prices of every small shape, answered with one array read.
+ * <p>
+ * All shapes of at most 'maxTitles' titles with at most 'maxCopies' copies each are solved
+ * once, when the engine is built. A shape padded with zeros to 'maxTitles' counts
+ * {@code a[0] >= a[1] >= ... >= 0} maps to the strictly decreasing
+ * {@code b[i] = a[i] + maxTitles - 1 - i}, whose combinatorial rank
+ * {@code sum of C(b[i], maxTitles - i)} indexes a flat array of
+ * {@code C(maxCopies + maxTitles, maxTitles)} prices with no gaps.
+ * Shapes outside the bounds go to the fallback engine, and so do solves that
+ * {@link SolveContext#explains() explain} their grouping.
+ */
+public final class LookupTablePriceEngine implements PricingEngine {
+
+    /**
+     * Largest number of precomputed prices (8 bytes each).
+     */
+    private static final long MAX_ENTRIES = 1L << 24;
+
+    private final int maxTitles;
+    private final int maxCopies;
+    private final int[][] binomials;
+    private final double[] prices;
+    private final PricingEngine fallback;
+    private final long buildNanos;
+
+    /**
+     * Solves every shape within the bounds with 'solver'; shapes out of bounds go to 'fallback'.
+     */
+    public LookupTablePriceEngine(PricingEngine solver, PricingEngine fallback, int maxTitles, int maxCopies) {
+        if (maxTitles < 1 || maxCopies < 1) {
+            throw new IllegalArgumentException("Lookup table bounds must be at least 1");
+        }
+        long start = System.nanoTime();
+        this.maxTitles = maxTitles;
+        this.maxCopies = maxCopies;
+        this.fallback = fallback;
+        this.binomials = binomials(maxCopies + maxTitles, maxTitles);
+        this.prices = new double[binomials[maxCopies + maxTitles][maxTitles]];
+        fill(solver, new int[maxTitles], 0, maxCopies);
+        this.buildNanos = System.nanoTime() - start;
+    }
+
+    private static int[][] binomials(int n, int k) {
+        long[][] table = new long[n + 1][k + 1];
+        for (int row = 0; row <= n; row++) {
+            table[row][0] = 1;
+            for (int column = 1; column <= Math.min(row, k); column++) {
+                table[row][column] = Math.min(MAX_ENTRIES + 1, table[row - 1][column - 1] + table[row - 1][column]);
+            }
+        }
+        if (table[n][k] > MAX_ENTRIES) {
+            throw new IllegalArgumentException("Lookup table bounds need %d entries, more than %d"
+                    .formatted(table[n][k], MAX_ENTRIES));
+        }
+        int[][] binomials = new int[n + 1][k + 1];
+        for (int row = 0; row <= n; row++) {
+            for (int column = 0; column <= k; column++) {
+                binomials[row][column] = (int) table[row][column];
+            }
+        }
+        return binomials;
+    }
+
+    /**
+     * Prices the shape made of the first 'length' counts, then every longer shape
+     * extending it with counts at most 'ceiling'.
+     */
+    private void fill(PricingEngine solver, int[] counts, int length, int ceiling) {
+        if (length > 0) {
+            int[] shape = Arrays.copyOf(counts, length);
+            prices[rank(shape)] = solver.price(shape);
+        }
+        if (length == maxTitles) {
+            return;
+        }
+        for (int count = 1; count <= ceiling; count++) {
+            counts[length] = count;
+            fill(solver, counts, length + 1, count);
+        }
+    }
+
+    private int rank(int[] sortedCounts) {
+        int rank = 0;
+        for (int i = 0; i < maxTitles; i++) {
+            int count = i < sortedCounts.length ? sortedCounts[i] : 0;
+            rank += binomials[count + maxTitles - 1 - i][maxTitles - i];
+        }
+        return rank;
+    }
+
+    @Override
+    public double price(int[] sortedCounts, SolveContext context) {
+        if (context.explains() || !covers(sortedCounts)) {
+            return fallback.price(sortedCounts, context);
+        }
+        return prices[rank(sortedCounts)];
+    }
+
+    /**
+     * Whether the shape is within the precomputed bounds.
+     */
+    public boolean covers(int[] sortedCounts) {
+        return sortedCounts.length > 0 && sortedCounts.length <= maxTitles && sortedCounts[0] <= maxCopies;
+    }
+
+    public int entries() {
+        return prices.length;
+    }
+
+    public long memoryBytes() {
+        return (long) prices.length * Double.BYTES;
+    }
+
+    public long buildNanos() {
+        return buildNanos;
+    }
+}
@@ -0,0 +1,84 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money: amounts as whole numbers of minor units (cents for a 'scale' of 2),
+ * with 'rounding' applied wherever a discount leaves a fraction of a minor unit.
+ * <p>
+ * Engines add minor units in {@code double}s: every value is a whole number far below 2^53,
+ * so each addition is exact while keeping the {@code double} hot path.
+ */
+public record MinorUnits(int scale, RoundingMode rounding) {
+
+    /**
+     * Cents, rounding half to even.
+     */
+    public static final MinorUnits DEFAULT = new MinorUnits(2, RoundingMode.HALF_EVEN);
+
+    public MinorUnits {
+        if (scale < 0 || scale > 9) {
+            throw new IllegalArgumentException("Money scale must be between 0 and 9");
+        }
+        if (rounding == null) {
+            throw new IllegalArgumentException("Money rounding must not be null");
+        }
+    }
+
+    /**
+     * Minor units per major unit.
+     */
+    public long unit() {
+        long unit = 1;
+        for (int i = 0; i < scale; i++) {
+            unit *= 10;
+        }
+        return unit;
+    }
+
+    /**
+     * Whether 'amount' is a whole number of minor units, i.e. has at most 'scale' decimals.
+     */
+    public boolean isExact(double amount) {
+        return Double.isFinite(amount) && BigDecimal.valueOf(amount).stripTrailingZeros().scale() <= scale;
+    }
+
+    /**
+     * The minor units of an amount that {@link #isExact is exact}, or of the nearest one otherwise.
+     */
+    public long toMinor(double amount) {
+        return Math.round(amount * unit());
+    }
+
+    /**
+     * The {@code double} closest to a number of minor units.
+     */
+    public double toMajor(double minorUnits) {
+        return minorUnits / unit();
+    }
+
+    /**
+     * {@code value / divisor} rounded with the rounding mode, for a positive divisor.
+     *
+     * @throws ArithmeticException when the mode is {@link RoundingMode#UNNECESSARY} and the division is not exact
+     */
+    public long divide(long value, long divisor) {
+        long quotient = Math.floorDiv(value, divisor);
+        long twiceRemainder = 2 * (value - quotient * divisor);
+        if (twiceRemainder == 0) {
+            return quotient;
+        }
+        boolean up = switch (rounding) {
+            case FLOOR -> false;
+            case CEILING -> true;
+            case DOWN -> value < 0;
+            case UP -> value > 0;
+            case HALF_UP -> twiceRemainder > divisor || twiceRemainder == divisor && value > 0;
+            case HALF_DOWN -> twiceRemainder > divisor || twiceRemainder == divisor && value < 0;
+            case HALF_EVEN -> twiceRemainder > divisor || twiceRemainder == divisor && (quotient & 1) != 0;
+            case UNNECESSARY -> throw new ArithmeticException("Rounding needed for %d / %d".formatted(value, divisor));
+        };
+        return up ? quotient + 1 : quotient;
+    }
+}
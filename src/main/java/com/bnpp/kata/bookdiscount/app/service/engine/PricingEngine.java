@@ -0,0 +1,14 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+/**
+ * Computes the cheapest price of a basket reduced to its canonical shape:
+ * the quantities of each distinct title, all positive and sorted descending.
+ */
+public interface PricingEngine {
+
+    double price(int[] sortedCounts, SolveContext context);
+
+    default double price(int[] sortedCounts) {
+        return price(sortedCounts, SolveContext.NONE);
+    }
+}
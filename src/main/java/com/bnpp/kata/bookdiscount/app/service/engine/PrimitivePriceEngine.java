@@ -0,0 +1,231 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.util.Arrays;
+
+/**
+ * Allocation-free version of the recursive DP, run on an explicit stack of states so that
+ * baskets of any number of copies are solved without deepening the thread's stack.
+ * <p>
+ * The state is one {@code int[]} mutated in place and restored on the way back,
+ * encoded by a {@link CountsKey} into a {@code long} that keys a primitive memo table: one bit field
+ * per title, or, for shapes with many titles, one bit field per count value holding how many
+ * titles have that many copies left. Taking one copy of the first 'groupSize' titles is applied
+ * directly in sorted form: inside the run of equal counts that straddles the group boundary, the
+ * last titles of the run are decremented instead of the first ones, so no re-sort is ever needed.
+ * Groups never exceed the table's largest discounted group size: a larger group costs exactly
+ * its titles sold as singles, so it never beats splitting it.
+ * <p>
+ * Prices are bit-for-bit identical to the list based reference DP the tests check it against:
+ * same group costs (in minor units), same additions, same minimum.
+ * <p>
+ * When asked for the grouping, the memo table doubles as a table of back-pointers: the group
+ * chosen in a state is the one whose cost plus the memoized price of what remains equals the
+ * state's price, so the grouping is read off the memo without searching again.
+ */
+public final class PrimitivePriceEngine implements PricingEngine {
+
+    private final DiscountTable discountTable;
+    private final int maxGroupSize;
+    private final CountsKey.Mode keyMode;
+
+    public PrimitivePriceEngine(DiscountTable discountTable) {
+        this(discountTable, null);
+    }
+
+    /**
+     * An engine that encodes its states with 'keyMode' whenever that fits, for tests.
+     */
+    PrimitivePriceEngine(DiscountTable discountTable, CountsKey.Mode keyMode) {
+        this.discountTable = discountTable;
+        this.maxGroupSize = Math.max(1, discountTable.maxGroupSize());
+        this.keyMode = keyMode;
+    }
+
+    @Override
+    public double price(int[] sortedCounts, SolveContext context) {
+        int titles = sortedCounts.length;
+        if (titles == 0) {
+            return 0.0;
+        }
+        CountsKey keys = CountsKey.of(sortedCounts, new int[]{0, titles}, keyMode);
+        long key = keys.encode(sortedCounts);
+        Solver solver = new Solver(sortedCounts.clone(), keys, context);
+        double price = solver.solve(titles, key);
+        context.addStatesExplored(solver.memo.size());
+        if (context.explains()) {
+            context.recordGrouping(solver.grouping(titles, key, price));
+        }
+        return discountTable.minorUnits().toMajor(price);
+    }
+
+    /**
+     * Per-call scratch state: the working vector, the memo table and the stack of states being solved.
+     */
+    private final class Solver {
+
+        private static final int INITIAL_DEPTH = 64;
+
+        private final int[] state;
+        private final CountsKey keys;
+        private final SolveContext context;
+        private final CountsMemo memo;
+
+        // One frame per state on the path from the basket to the state being solved: its length,
+        // key, best price so far, the group size last taken from it, and how to give that group back.
+        private int[] lengths = new int[INITIAL_DEPTH];
+        private long[] frameKeys = new long[INITIAL_DEPTH];
+        private double[] bestPrices = new double[INITIAL_DEPTH];
+        private int[] groupSizes = new int[INITIAL_DEPTH];
+        private int[] runStarts = new int[INITIAL_DEPTH];
+        private int[] tailFroms = new int[INITIAL_DEPTH];
+        private int[] tailTos = new int[INITIAL_DEPTH];
+
+        private Solver(int[] state, CountsKey keys, SolveContext context) {
+            this.state = state;
+            this.keys = keys;
+            this.context = context;
+            this.memo = new CountsMemo(keys);
+        }
+
+        /**
+         * Cheapest price, in minor units, for the first 'length' (positive) entries of the state,
+         * whose packed form is 'key'. Each frame tries group sizes 1 to the largest in turn: taking
+         * a group either resolves at once (empty or memoized remainder) or pushes the remainder,
+         * whose price is added to the group cost once it is popped. Leaves the state as it found it.
+         */
+        private double solve(int length, long key) {
+            if (length == 0) {
+                return 0.0;
+            }
+            double cached = memo.get(key, state);
+            if (!Double.isNaN(cached)) {
+                return cached;
+            }
+            int depth = 0;
+            push(depth++, length, key);
+            double remainder = Double.NaN;
+            while (true) {
+                int top = depth - 1;
+                if (!Double.isNaN(remainder)) {
+                    shift(runStarts[top], tailFroms[top], tailTos[top], +1);
+                    bestPrices[top] = Math.min(bestPrices[top], discountTable.groupCost(groupSizes[top]) + remainder);
+                    remainder = Double.NaN;
+                }
+                int groupSize = ++groupSizes[top];
+                if (groupSize > Math.min(lengths[top], maxGroupSize)) {
+                    memo.put(frameKeys[top], state, bestPrices[top]);
+                    remainder = bestPrices[top];
+                    if (--depth == 0) {
+                        return remainder;
+                    }
+                    continue;
+                }
+                int frameLength = lengths[top];
+                int boundary = state[groupSize - 1];
+                int runStart = runStart(groupSize);
+                int runEnd = runEnd(groupSize, frameLength);
+                int fromRun = groupSize - runStart;
+                runStarts[top] = runStart;
+                tailFroms[top] = runEnd - fromRun;
+                tailTos[top] = runEnd;
+                long remainingKey = frameKeys[top] - shift(runStart, runEnd - fromRun, runEnd, -1);
+                int remainingLength = boundary == 1 ? frameLength - fromRun : frameLength;
+                remainder = remainingLength == 0 ? 0.0 : memo.get(remainingKey, state);
+                if (Double.isNaN(remainder)) {
+                    push(depth++, remainingLength, remainingKey);
+                }
+            }
+        }
+
+        /**
+         * Opens the frame of a state not memoized yet, charging it to the budget.
+         */
+        private void push(int depth, int length, long key) {
+            context.charge();
+            if (depth == lengths.length) {
+                int capacity = depth * 2;
+                lengths = Arrays.copyOf(lengths, capacity);
+                frameKeys = Arrays.copyOf(frameKeys, capacity);
+                bestPrices = Arrays.copyOf(bestPrices, capacity);
+                groupSizes = Arrays.copyOf(groupSizes, capacity);
+                runStarts = Arrays.copyOf(runStarts, capacity);
+                tailFroms = Arrays.copyOf(tailFroms, capacity);
+                tailTos = Arrays.copyOf(tailTos, capacity);
+            }
+            lengths[depth] = length;
+            frameKeys[depth] = key;
+            bestPrices[depth] = Double.MAX_VALUE;
+            groupSizes[depth] = 0;
+        }
+
+        /**
+         * Replays the choices solve() kept from the state 'key', worth 'price', down to the empty basket.
+         * Leaves the state empty.
+         */
+        private Grouping grouping(int length, long key, double price) {
+            Grouping grouping = new Grouping();
+            while (length > 0) {
+                int largestGroup = Math.min(length, maxGroupSize);
+                for (int groupSize = 1; groupSize <= largestGroup; groupSize++) {
+                    int boundary = state[groupSize - 1];
+                    int runStart = runStart(groupSize);
+                    int runEnd = runEnd(groupSize, length);
+                    int fromRun = groupSize - runStart;
+
+                    long delta = shift(runStart, runEnd - fromRun, runEnd, -1);
+                    int remainingLength = boundary == 1 ? length - fromRun : length;
+                    double rest = remainingLength == 0 ? 0.0 : memo.get(key - delta, state);
+                    if (discountTable.groupCost(groupSize) + rest == price) {
+                        grouping.addUniform(discountTable, groupSize, 1);
+                        length = remainingLength;
+                        key -= delta;
+                        price = rest;
+                        break;
+                    }
+                    shift(runStart, runEnd - fromRun, runEnd, +1);
+                    if (groupSize == largestGroup) {
+                        throw new IllegalStateException("No memoized choice explains price " + price);
+                    }
+                }
+            }
+            return grouping;
+        }
+
+        /**
+         * First title of the run of equal counts holding title 'groupSize - 1'.
+         */
+        private int runStart(int groupSize) {
+            int boundary = state[groupSize - 1];
+            int runStart = groupSize - 1;
+            while (runStart > 0 && state[runStart - 1] == boundary) {
+                runStart--;
+            }
+            return runStart;
+        }
+
+        /**
+         * End (exclusive) of the run of equal counts holding title 'groupSize - 1'.
+         */
+        private int runEnd(int groupSize, int length) {
+            return CountsKey.firstAtMost(state, groupSize, length, state[groupSize - 1] - 1);
+        }
+
+        /**
+         * Adds 'step' to the titles before 'runStart' and to those in [tailFrom, tailTo):
+         * one copy of the first titles, taken from the end of the straddling run so the state
+         * stays sorted. Returns the amount by which the key changes.
+         */
+        private long shift(int runStart, int tailFrom, int tailTo, int step) {
+            long delta = 0L;
+            for (int i = 0; i < runStart; i++) {
+                delta += keys.decrement(i, step < 0 ? state[i] : state[i] + 1);
+                state[i] += step;
+            }
+            for (int i = tailFrom; i < tailTo; i++) {
+                delta += keys.decrement(i, step < 0 ? state[i] : state[i] + 1);
+                state[i] += step;
+            }
+            return delta;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+/**
+ * Thrown by an exact engine when its solve outgrows the {@link SolveContext#limit budget}
+ * of its context. Nothing partial is memoized or cached: the caller decides whether to
+ * fall back to {@link GreedyPriceEngine an approximation} or to refuse the basket.
+ */
+public class SolveBudgetExceededException extends RuntimeException {
+
+    private final long states;
+
+    public SolveBudgetExceededException(long states) {
+        super("Solve abandoned after %d states".formatted(states), null, false, false);
+        this.states = states;
+    }
+
+    /**
+     * DP states explored before the solve was abandoned.
+     */
+    public long states() {
+        return states;
+    }
+}
@@ -0,0 +1,132 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.time.Duration;
+
+/**
+ * Per-solve bookkeeping handed down the engine chain.
+ * Not thread-safe: one context per price request.
+ */
+public final class SolveContext {
+
+    /**
+     * Shared context for callers that do not look at the bookkeeping; records nothing.
+     */
+    public static final SolveContext NONE = new SolveContext(false, false);
+
+    /**
+     * The clock is read once every this many states (a power of two, minus one).
+     */
+    private static final long DEADLINE_CHECK_MASK = 255;
+
+    private final boolean recording;
+    private final boolean explaining;
+    private long statesExplored;
+    private Grouping grouping;
+    private long maxStates = Long.MAX_VALUE;
+    private boolean timeBounded;
+    private long deadline;
+    private long statesCharged;
+    private boolean approximate;
+
+    public SolveContext() {
+        this(true, false);
+    }
+
+    private SolveContext(boolean recording, boolean explaining) {
+        this.recording = recording;
+        this.explaining = explaining;
+    }
+
+    /**
+     * A context that also asks the solver for its optimal {@link #grouping() grouping}.
+     * Precomputed and cached prices carry no grouping, so such solves skip the lookup table
+     * and the shape cache.
+     */
+    public static SolveContext explaining() {
+        return new SolveContext(true, true);
+    }
+
+    /**
+     * Called by engines with the number of DP states or candidate solutions they evaluated.
+     */
+    public void addStatesExplored(long states) {
+        if (recording) {
+            statesExplored += states;
+        }
+    }
+
+    public long statesExplored() {
+        return statesExplored;
+    }
+
+    /**
+     * Bounds the exact solve: at most 'maxStates' new DP states, explored within 'timeLimit'
+     * from now. Zero (or a zero duration) leaves that bound off.
+     */
+    public void limit(long maxStates, Duration timeLimit) {
+        if (!recording) {
+            throw new IllegalStateException("The shared context cannot be limited");
+        }
+        this.maxStates = maxStates > 0 ? maxStates : Long.MAX_VALUE;
+        this.timeBounded = timeLimit.isPositive();
+        this.deadline = System.nanoTime() + (timeBounded ? timeLimit.toNanos() : 0L);
+        this.statesCharged = 0;
+    }
+
+    /**
+     * Called by the DP engines for every new state they explore.
+     *
+     * @throws SolveBudgetExceededException once the state or time budget is spent
+     */
+    void charge() {
+        if (maxStates == Long.MAX_VALUE && !timeBounded) {
+            return;
+        }
+        long states = ++statesCharged;
+        if (states > maxStates
+                || timeBounded && (states & DEADLINE_CHECK_MASK) == 0 && System.nanoTime() - deadline > 0) {
+            throw new SolveBudgetExceededException(states);
+        }
+    }
+
+    /**
+     * Marks the price as an upper bound from {@link GreedyPriceEngine} rather than the optimum.
+     */
+    public void markApproximate() {
+        approximate = true;
+    }
+
+    /**
+     * Takes over the outcome of the same solve run under another context, for callers that
+     * waited on someone else's solve: its grouping and approximate flag, but not its explored
+     * states, which this caller did not explore.
+     */
+    public void adopt(SolveContext solved) {
+        approximate |= solved.approximate;
+        if (explaining) {
+            grouping = solved.grouping;
+        }
+    }
+
+    public boolean approximate() {
+        return approximate;
+    }
+
+    /**
+     * Whether the engine that solves the basket should record its grouping.
+     */
+    public boolean explains() {
+        return explaining;
+    }
+
+    void recordGrouping(Grouping grouping) {
+        this.grouping = grouping;
+    }
+
+    /**
+     * The optimal grouping of an {@link #explaining() explaining} solve, null otherwise.
+     */
+    public Grouping grouping() {
+        return grouping;
+    }
+}
@@ -0,0 +1,248 @@
+package com.bnpp.kata.bookdiscount.app.catalog;
+
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.service.BookPriceService;
+import com.bnpp.kata.bookdiscount.app.service.PricingMetrics;
+import com.bnpp.kata.bookdiscount.app.service.engine.BasketShape;
+import com.bnpp.kata.bookdiscount.app.service.engine.DiscountTable;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogServiceTest {
+
+    private static final List<BookItem> KATA_BASKET = List.of(
+            new BookItem("Clean Code", 2),
+            new BookItem("The Clean Coder", 2),
+            new BookItem("Clean Architecture", 2),
+            new BookItem("TDD", 1),
+            new BookItem("Legacy Code", 1)
+    );
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Use the kata catalog when no catalog file is configured")
+    void testDefaultCatalog() {
+        CatalogService catalogs = new CatalogService(PricingProperties.defaults());
+
+        assertEquals(50.0, catalogs.current().unitPrice("clean code"));
+        assertTrue(catalogs.current().discountTable().hasKataDiscounts());
+        assertFalse(catalogs.reloadIfChanged());
+    }
+
+    @Test
+    @DisplayName("Price titles at their catalog price and pick up a new file without restart")
+    void testPerTitlePricesAndReload() throws IOException {
+        Path file = write("""
+                { "bookPrice": 50.0,
+                  "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 },
+                  "titlePrices": { " Clean Code ": 60.0 } }
+                """, Instant.parse("2026-01-01T00:00:00Z"));
+        CatalogService catalogs = new CatalogService(properties(file));
+        BookPriceService service = new BookPriceService(catalogs, new TitleDictionary(1_000), PricingMetrics.noop());
+
+        assertEquals(1, catalogs.current().version());
+        assertEquals(60.0, service.calculatePrice(List.of(new BookItem("CLEAN CODE", 1))), 0.01);
+        assertEquals(104.5, service.calculatePrice(List.of(
+                new BookItem("Clean Code", 1),
+                new BookItem("TDD", 1)
+        )), 0.01);
+
+        write("""
+                { "bookPrice": 40.0,
+                  "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 } }
+                """, Instant.parse("2026-01-02T00:00:00Z"));
+
+        assertTrue(catalogs.reloadIfChanged());
+        assertEquals(2, catalogs.current().version());
+        assertEquals(256.0, service.calculatePrice(KATA_BASKET), 0.01);
+    }
+
+    @Test
+    @DisplayName("Price dictionary IDs from a column resolved per catalog version and dictionary table")
+    void testUnitPriceColumn() throws IOException {
+        Path file = write("""
+                { "bookPrice": 50.0,
+                  "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 },
+                  "titlePrices": { " Clean Code ": 60.0 } }
+                """, Instant.parse("2026-01-01T00:00:00Z"));
+        CatalogService catalogs = new CatalogService(properties(file));
+        TitleDictionary dictionary = new TitleDictionary(3);
+        TitleDictionary.Table titles = dictionary.table();
+        int tdd = titles.idOf("TDD");
+
+        double[] prices = catalogs.current().unitPrices(titles);
+        assertEquals(60.0, prices[titles.idOf("CLEAN CODE")]);
+        assertEquals(50.0, prices[tdd]);
+        assertSame(prices, catalogs.current().unitPrices(titles));
+
+        titles.idOf("Legacy Code");
+        assertEquals(-1, titles.idOf("Refactoring"));
+        TitleDictionary.Table next = dictionary.table();
+        assertNotSame(titles, next);
+        assertEquals(60.0, catalogs.current().unitPrices(next)[next.idOf("clean code")]);
+
+        write("""
+                { "bookPrice": 40.0,
+                  "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 },
+                  "titlePrices": { "TDD": 45.0 } }
+                """, Instant.parse("2026-01-02T00:00:00Z"));
+        assertTrue(catalogs.reloadIfChanged());
+        prices = catalogs.current().unitPrices(next);
+        assertEquals(40.0, prices[next.idOf("Clean Code")]);
+        assertEquals(45.0, prices[next.idOf("tdd")]);
+    }
+
+    @Test
+    @DisplayName("Only count shapes as constant time when the closed form holds at their own unit price")
+    void testConstantTimePerPricePoint() throws IOException {
+        Path file = write("""
+                { "bookPrice": 50.0,
+                  "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 },
+                  "titlePrices": { "Penny Book": 0.01 } }
+                """, Instant.parse("2026-01-01T00:00:00Z"));
+        Catalog catalog = new CatalogService(properties(file)).current();
+        int[] counts = {2, 2, 2, 1, 1};
+
+        assertTrue(catalog.constantTime(new BasketShape(counts, 50.0), SolveContext.explaining()));
+        assertFalse(catalog.constantTime(new BasketShape(counts, 0.01), SolveContext.explaining()));
+        assertTrue(catalog.coalesces(new BasketShape(counts, 0.01), new SolveContext()));
+
+        write("""
+                { "bookPrice": 0.01,
+                  "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 },
+                  "titlePrices": { "Clean Code": 50.0 } }
+                """, Instant.parse("2026-01-01T00:00:00Z"));
+        catalog = new CatalogService(properties(file)).current();
+
+        assertTrue(catalog.constantTime(new BasketShape(counts, 50.0), SolveContext.explaining()));
+        assertFalse(catalog.constantTime(new BasketShape(counts, 0.01), SolveContext.explaining()));
+    }
+
+    @Test
+    @DisplayName("Keep serving the previous version when the new file is invalid")
+    void testInvalidReloadIsIgnored() throws IOException {
+        Path file = write("""
+                { "bookPrice": 50.0, "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 } }
+                """, Instant.parse("2026-01-01T00:00:00Z"));
+        CatalogService catalogs = new CatalogService(properties(file));
+
+        write("""
+                { "bookPrice": 50.0, "discounts": { "2": 1.5 } }
+                """, Instant.parse("2026-01-02T00:00:00Z"));
+
+        assertFalse(catalogs.reloadIfChanged());
+        assertEquals(1, catalogs.current().version());
+        assertEquals(320.0, new BookPriceService(catalogs, new TitleDictionary(1_000), PricingMetrics.noop()).calculatePrice(KATA_BASKET), 0.01);
+    }
+
+    @Test
+    @DisplayName("Keep polling after a file that holds no catalog, and pick up the next valid one")
+    void testReloadSurvivesNullCatalog() throws Exception {
+        Path file = write("""
+                { "bookPrice": 50.0, "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 } }
+                """, Instant.parse("2026-01-01T00:00:00Z"));
+        CatalogService catalogs = new CatalogService(PricingProperties.defaults()
+                .withCatalog(new PricingProperties.CatalogFile(file.toString(), Duration.ofMillis(10))));
+        try {
+            write("null", Instant.parse("2026-01-02T00:00:00Z"));
+            assertFalse(catalogs.reloadIfChanged());
+            Thread.sleep(200);
+            assertEquals(1, catalogs.current().version());
+
+            write("""
+                    { "bookPrice": 40.0, "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 } }
+                    """, Instant.parse("2026-01-03T00:00:00Z"));
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (catalogs.current().version() == 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, catalogs.current().version());
+            assertEquals(40.0, catalogs.current().unitPrice("tdd"));
+        } finally {
+            catalogs.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Refuse to start on an invalid catalog")
+    void testInvalidCatalogAtStartup() {
+        CatalogDefinition definition = new CatalogDefinition(-1.0, DiscountTable.KATA_DISCOUNTS, null);
+        assertThrows(IllegalArgumentException.class,
+                () -> Catalog.compile(definition, PricingProperties.defaults(), 1));
+    }
+
+    @Test
+    @DisplayName("Approximate, or refuse, a basket that outgrows the solver budget")
+    void testSolverBudget() throws IOException {
+        Path file = write("""
+                { "bookPrice": 50.0,
+                  "discounts": { "2": 0.05, "3": 0.10, "4": 0.20, "5": 0.25 },
+                  "titlePrices": { "Clean Code": 60.0 } }
+                """, Instant.parse("2026-01-01T00:00:00Z"));
+        List<BookItem> basket = List.of(
+                new BookItem("Clean Code", 4),
+                new BookItem("The Clean Coder", 4),
+                new BookItem("Clean Architecture", 3),
+                new BookItem("TDD", 2),
+                new BookItem("Legacy Code", 2)
+        );
+        BookPriceService exact = new BookPriceService(new CatalogService(properties(file)),
+                new TitleDictionary(1_000), PricingMetrics.noop());
+        BookPriceService approximating = new BookPriceService(new CatalogService(properties(file,
+                new PricingProperties.Budget(5, Duration.ZERO, PricingProperties.Budget.OnExceeded.APPROXIMATE))),
+                new TitleDictionary(1_000), PricingMetrics.noop());
+        BookPriceService rejecting = new BookPriceService(new CatalogService(properties(file,
+                new PricingProperties.Budget(5, Duration.ZERO, PricingProperties.Budget.OnExceeded.REJECT))),
+                new TitleDictionary(1_000), PricingMetrics.noop());
+
+        SolveContext optimum = new SolveContext();
+        double price = exact.calculatePrice(basket, optimum);
+        assertFalse(optimum.approximate());
+
+        SolveContext bounded = new SolveContext();
+        assertTrue(approximating.calculatePrice(basket, bounded) >= price);
+        assertTrue(bounded.approximate());
+
+        InvalidBasketException ex = assertThrows(InvalidBasketException.class, () -> rejecting.calculatePrice(basket));
+        assertEquals(HttpStatus.UNPROCESSABLE_CONTENT, ex.getStatus());
+    }
+
+    private Path write(String json, Instant modified) throws IOException {
+        Path file = directory.resolve("catalog.json");
+        Files.writeString(file, json);
+        Files.setLastModifiedTime(file, FileTime.from(modified));
+        return file;
+    }
+
+    private static PricingProperties properties(Path file) {
+        return properties(file, PricingProperties.defaults().budget());
+    }
+
+    private static PricingProperties properties(Path file, PricingProperties.Budget budget) {
+        return PricingProperties.defaults()
+                .withCatalog(new PricingProperties.CatalogFile(file.toString(), Duration.ZERO))
+                .withBudget(budget);
+    }
+}
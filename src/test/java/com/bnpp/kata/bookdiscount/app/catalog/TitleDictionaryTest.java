@@ -0,0 +1,104 @@
+package com.bnpp.kata.bookdiscount.app.catalog;
+
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.service.BookPriceService;
+import com.bnpp.kata.bookdiscount.app.service.PricingMetrics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class TitleDictionaryTest {
+
+    @Test
+    @DisplayName("Give the same ID to titles differing only by case and surrounding spaces")
+    void testCaseAndWhitespaceInsensitive() {
+        TitleDictionary.Table titles = new TitleDictionary(100).table();
+
+        int id = titles.idOf("Clean Code");
+        assertEquals(id, titles.idOf("  clean CODE "));
+        assertEquals(id, titles.idOf("CLEAN CODE"));
+        assertNotEquals(id, titles.idOf("Clean Coder"));
+        assertEquals("clean code", titles.title(id));
+        assertEquals(2, titles.size());
+    }
+
+    @Test
+    @DisplayName("Normalize like String.toLowerCase in the root locale, even where that differs char by char")
+    void testNonAsciiTitlesNormalizeLikeStringToLowerCase() {
+        TitleDictionary.Table titles = new TitleDictionary(100).table();
+        for (String title : List.of(" \u0130stanbul ", "\u039F\u0394\u039F\u03A3", "\uD801\uDC00 Deseret",
+                "\u212Aata", "Stra\u00DFe", "Caf\u00C9 Cr\u00C8me")) {
+            String expected = title.trim().toLowerCase(Locale.ROOT);
+            assertEquals(expected, TitleDictionary.normalize(title));
+            assertEquals(expected, titles.title(titles.idOf(title)));
+            assertEquals(titles.idOf(title), titles.idOf(expected));
+        }
+
+        // Final sigma: "ΟΔΟΣ" lower-cases to "οδος", not to the char-by-char "οδοσ"
+        assertNotEquals(titles.idOf("\u039F\u0394\u039F\u03A3"), titles.idOf("\u03BF\u03B4\u03BF\u03C3"));
+        // Kelvin sign: lower-cases to an ASCII 'k', so it merges with the ASCII title
+        assertEquals(titles.idOf("KATA"), titles.idOf("\u212Aata"));
+        assertEquals(titles.idOf("caf\u00E9 cr\u00E8me"), titles.idOf(" CAF\u00C9 CR\u00C8ME"));
+    }
+
+    @Test
+    @DisplayName("Start over with an empty table once the maximum size is reached")
+    void testFullTableIsReplaced() {
+        TitleDictionary dictionary = new TitleDictionary(2);
+        TitleDictionary.Table full = dictionary.table();
+        full.idOf("A");
+        full.idOf("B");
+
+        assertEquals(-1, full.idOf("C"));
+        assertEquals(0, full.idOf("a"));
+        assertNotSame(full, dictionary.table());
+        assertEquals(0, dictionary.size());
+    }
+
+    @Test
+    @DisplayName("Hand out one ID per title when many threads intern its variants concurrently")
+    void testConcurrentInterning() {
+        TitleDictionary.Table titles = new TitleDictionary(10_000).table();
+        Set<String> assignments = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 64).parallel().forEach(round -> {
+            for (int title = 0; title < 500; title++) {
+                String raw = switch (round % 4) {
+                    case 0 -> "Title " + title;
+                    case 1 -> " TITLE " + title;
+                    case 2 -> "Titl\u00C9 " + title;
+                    default -> "titl\u00E9 " + title + "  ";
+                };
+                assignments.add((round % 4 < 2 ? "ascii " : "accented ") + title + "=" + titles.idOf(raw));
+            }
+        });
+        assertEquals(1_000, assignments.size());
+        assertEquals(1_000, assignments.stream().map(assignment -> assignment.substring(assignment.indexOf('=')))
+                .distinct().count());
+    }
+
+    @Test
+    @DisplayName("Still merge duplicate titles when the dictionary fills up mid-request")
+    void testMergeFallsBackWhenDictionaryIsFull() {
+        BookPriceService service = new BookPriceService(
+                new CatalogService(PricingProperties.defaults()), new TitleDictionary(2), PricingMetrics.noop());
+
+        assertEquals(320.0, service.calculatePrice(List.of(
+                new BookItem("Clean Code", 1),
+                new BookItem("The Clean Coder", 2),
+                new BookItem("clean code", 1),
+                new BookItem("Clean Architecture", 2),
+                new BookItem("TDD", 1),
+                new BookItem("Legacy Code", 1)
+        )), 0.01);
+    }
+}
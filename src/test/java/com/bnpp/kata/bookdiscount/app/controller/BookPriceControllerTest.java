@@ -1,15 +1,28 @@
 package com.bnpp.kata.bookdiscount.app.controller;
 
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.model.BookPriceResponse;
+import com.bnpp.kata.bookdiscount.app.model.UserBasketRequest;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import tools.jackson.databind.ObjectMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
 import org.springframework.http.MediaType;
 
+import java.util.List;
+
 import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -41,6 +54,107 @@ class BookPriceControllerTest {
                 .andExpect(jsonPath("$.bestOfferedPrice", is(95.0)));
     }
 
+    @Test
+    @DisplayName("POST /api/price/calculate?echo=false → returns the price without echoing the basket")
+    void testCalculatePriceEndpointWithoutEcho() throws Exception {
+        String requestJson = """
+        {
+          "bookItemList": [
+            { "title": "Clean Code",      "quantity": 1 },
+            { "title": "The Clean Coder", "quantity": 1 }
+          ]
+        }
+        """;
+
+        mockMvc.perform(post("/api/price/calculate")
+                        .param("echo", "false")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestJson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bestOfferedPrice", is(95.0)))
+                .andExpect(jsonPath("$.userRequest").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("POST /api/price/calculate?explain=true → returns the optimal groups and their savings")
+    void testCalculatePriceEndpointExplained() throws Exception {
+        String requestJson = """
+        {
+          "bookItemList": [
+            { "title": "Clean Code",         "quantity": 2 },
+            { "title": "The Clean Coder",    "quantity": 2 },
+            { "title": "Clean Architecture", "quantity": 2 },
+            { "title": "TDD",                "quantity": 1 },
+            { "title": "Legacy Code",        "quantity": 1 }
+          ]
+        }
+        """;
+
+        mockMvc.perform(post("/api/price/calculate")
+                        .param("explain", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestJson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bestOfferedPrice", is(320.0)))
+                .andExpect(jsonPath("$.bestOfferedPriceMinorUnits", is(32000)))
+                .andExpect(jsonPath("$.groups.length()", is(1)))
+                .andExpect(jsonPath("$.groups[0].titles", is(4)))
+                .andExpect(jsonPath("$.groups[0].sets", is(2)))
+                .andExpect(jsonPath("$.groups[0].price", is(160.0)))
+                .andExpect(jsonPath("$.groups[0].saving", is(40.0)));
+    }
+
+    @Test
+    @DisplayName("POST /api/price/calculate → reads and writes CBOR, in fewer bytes than JSON")
+    void testCalculatePriceEndpointCbor() throws Exception {
+        CBORMapper cborMapper = CBORMapper.builder().build();
+        UserBasketRequest request = new UserBasketRequest(List.of(
+                new BookItem("Clean Code", 1), new BookItem("The Clean Coder", 1)));
+        byte[] requestCbor = cborMapper.writeValueAsBytes(request);
+
+        byte[] responseCbor = mockMvc.perform(post("/api/price/calculate")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(requestCbor))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        BookPriceResponse response = cborMapper.readValue(responseCbor, BookPriceResponse.class);
+        assertEquals(95.0, response.bestOfferedPrice());
+        assertEquals(request, response.userRequest());
+        assertTrue(requestCbor.length < objectMapper.writeValueAsBytes(request).length);
+    }
+
+    @Test
+    @DisplayName("Basket session → open, edit item by item, read, close")
+    void testBasketSessionLifecycle() throws Exception {
+        String opened = mockMvc.perform(post("/api/price/sessions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"bookItemList\": [ { \"title\": \"Clean Code\", \"quantity\": 2 } ] }"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.bestOfferedPrice", is(100.0)))
+                .andReturn().getResponse().getContentAsString();
+        String sessionId = objectMapper.readTree(opened).get("sessionId").asString();
+
+        mockMvc.perform(patch("/api/price/sessions/{id}", sessionId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"bookItemList\": [ { \"title\": \"TDD\", \"quantity\": 1 }, "
+                                + "{ \"title\": \"clean code\", \"quantity\": -1 } ] }"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bestOfferedPrice", is(95.0)))
+                .andExpect(jsonPath("$.bookItemList.length()", is(2)));
+
+        mockMvc.perform(get("/api/price/sessions/{id}", sessionId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bestOfferedPrice", is(95.0)));
+
+        mockMvc.perform(delete("/api/price/sessions/{id}", sessionId))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/price/sessions/{id}", sessionId))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     @DisplayName("POST /api/price/calculate → returns 400 Bad Request when 'items' field is missing")
     void testCalculatePriceEndpointValidationError() throws Exception {
@@ -71,4 +185,122 @@ class BookPriceControllerTest {
                         .content(requestJson))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @DisplayName("POST /api/price/calculate-batch → prices each basket and reports per-basket errors")
+    void testCalculateBatchEndpoint() throws Exception {
+        String requestJson = """
+        {
+          "baskets": [
+            { "bookItemList": [ { "title": "Clean Code", "quantity": 1 }, { "title": "TDD", "quantity": 1 } ] },
+            { "bookItemList": [ { "title": "Clean Code", "quantity": -1 } ] },
+            { "bookItemList": [ { "title": "Legacy Code", "quantity": 1 }, { "title": "tdd", "quantity": 1 } ] }
+          ]
+        }
+        """;
+
+        mockMvc.perform(post("/api/price/calculate-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestJson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].bestOfferedPrice", is(95.0)))
+                .andExpect(jsonPath("$.results[1].error", is("Quantity for book 'Clean Code' must not be negative")))
+                .andExpect(jsonPath("$.results[2].bestOfferedPrice", is(95.0)))
+                .andExpect(jsonPath("$.distinctShapes", is(1)));
+    }
+
+    @Test
+    @DisplayName("POST /api/price/calculate-batch → a null basket or a null item fails only its own basket")
+    void testCalculateBatchEndpointWithNullEntries() throws Exception {
+        String requestJson = """
+        {
+          "baskets": [
+            { "bookItemList": [ { "title": "Clean Code", "quantity": 1 }, null ] },
+            null,
+            { "bookItemList": [ { "title": "Clean Code", "quantity": 1 }, { "title": "TDD", "quantity": 1 } ] }
+          ]
+        }
+        """;
+
+        mockMvc.perform(post("/api/price/calculate-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestJson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].error", is("Basket item must not be null")))
+                .andExpect(jsonPath("$.results[1].error", is("Basket must not be null")))
+                .andExpect(jsonPath("$.results[2].bestOfferedPrice", is(95.0)));
+    }
+
+    @Test
+    @DisplayName("POST /api/price/calculate-batch → returns 400 Bad Request when 'baskets' is empty")
+    void testCalculateBatchEndpointEmptyBatch() throws Exception {
+        mockMvc.perform(post("/api/price/calculate-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{ \"baskets\": [] }"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("POST /api/price/calculate-async → prices off the request thread, like /calculate")
+    void testCalculatePriceAsyncEndpoint() throws Exception {
+        String requestJson = """
+        {
+          "bookItemList": [
+            { "title": "A", "quantity": 2 }, { "title": "B", "quantity": 2 }, { "title": "C", "quantity": 2 },
+            { "title": "D", "quantity": 1 }, { "title": "E", "quantity": 1 }, { "title": "F", "quantity": 1 }
+          ]
+        }
+        """;
+
+        MvcResult pending = mockMvc.perform(post("/api/price/calculate-async")
+                        .param("explain", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestJson))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bestOfferedPrice", is(347.5)))
+                .andExpect(jsonPath("$.groups").isArray());
+
+        mockMvc.perform(post("/api/price/calculate-async")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                        { "bookItemList": [ { "title": "Clean Code", "quantity": -1 } ] }
+                        """))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("POST /api/price/calculate-stream → writes one NDJSON result per line, errors included")
+    void testCalculateStreamEndpoint() throws Exception {
+        String feed = """
+        {"bookItemList":[{"title":"Clean Code","quantity":1},{"title":"TDD","quantity":1}]}
+        {"bookItemList":[{"title":"Clean Code","quantity":-1}]}
+        not json
+        {"bookItemList":[{"title":"Legacy Code","quantity":2}]}
+        """;
+
+        MvcResult pending = mockMvc.perform(post("/api/price/calculate-stream")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(feed))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString()
+                .split("\n");
+
+        assertEquals(4, lines.length);
+        assertEquals(95.0,
+                objectMapper.readTree(lines[0]).get("bestOfferedPrice").asDouble());
+        assertEquals("Quantity for book 'Clean Code' must not be negative",
+                objectMapper.readTree(lines[1]).get("error").asString());
+        assertEquals(3,
+                objectMapper.readTree(lines[2]).get("line").asInt());
+        assertEquals(100.0,
+                objectMapper.readTree(lines[3]).get("bestOfferedPrice").asDouble());
+    }
 }
@@ -0,0 +1,155 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.config.AdmissionProperties;
+import com.bnpp.kata.bookdiscount.app.controller.AdmissionInterceptor;
+import com.bnpp.kata.bookdiscount.app.exception.TooManyRequestsException;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.model.UserBasketRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdmissionControlTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Admit a client's burst, refuse it until tokens refill, and keep clients apart")
+    void testRateLimitPerClient() {
+        AdmissionControl admission = admission(true, 10, 3, 100);
+
+        for (int i = 0; i < 3; i++) {
+            admission.admitRate("alice");
+        }
+        TooManyRequestsException refused = assertThrows(TooManyRequestsException.class,
+                () -> admission.admitRate("alice"));
+        assertEquals(1, refused.getRetryAfterSeconds());
+        assertDoesNotThrow(() -> admission.admitRate("bob"));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        admission.admitRate("alice");
+        assertThrows(TooManyRequestsException.class, () -> admission.admitRate("alice"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        for (int i = 0; i < 3; i++) {
+            admission.admitRate("alice");
+        }
+        assertEquals(2.0, registry.get("bookdiscount.admission.rejected").tag("reason", "rate").counter().count());
+    }
+
+    @Test
+    @DisplayName("Retry-After covers the wait for the next token")
+    void testRetryAfterRoundsUpToSeconds() {
+        AdmissionControl admission = admission(true, 0.5, 1, 100);
+
+        admission.admitRate("alice");
+        assertEquals(2, assertThrows(TooManyRequestsException.class,
+                () -> admission.admitRate("alice")).getRetryAfterSeconds());
+    }
+
+    @Test
+    @DisplayName("Refuse baskets over the in-flight cost budget until earlier ones are priced")
+    void testInFlightCostBudget() {
+        AdmissionControl admission = admission(true, 1000, 1000, 100);
+
+        AdmissionControl.Permit first = admission.acquire(60);
+        try (AdmissionControl.Permit second = admission.acquire(40)) {
+            assertEquals(100, admission.inFlightCost());
+            assertThrows(TooManyRequestsException.class, () -> admission.acquire(1));
+        }
+        first.close();
+        assertEquals(0, admission.inFlightCost());
+
+        try (AdmissionControl.Permit oversized = admission.acquire(500)) {
+            assertEquals(500, admission.inFlightCost());
+            assertThrows(TooManyRequestsException.class, () -> admission.acquire(1));
+        }
+        assertEquals(0, admission.inFlightCost());
+        assertEquals(2.0, registry.get("bookdiscount.admission.rejected").tag("reason", "concurrency").counter().count());
+    }
+
+    @Test
+    @DisplayName("Admit everything when admission control is disabled")
+    void testDisabled() {
+        AdmissionControl admission = admission(false, 1, 1, 1);
+
+        for (int i = 0; i < 10; i++) {
+            admission.admitRate("alice");
+            admission.acquire(1_000);
+        }
+        assertEquals(0, admission.inFlightCost());
+    }
+
+    @Test
+    @DisplayName("Estimate a basket's cost as lines times copies, ignoring what validation will refuse")
+    void testCost() {
+        assertEquals(6, AdmissionControl.cost(List.of(new BookItem("A", 2), new BookItem("B", 1))));
+        assertEquals(2, AdmissionControl.cost(List.of(new BookItem("A", 1), new BookItem("B", -4))));
+        assertEquals(1, AdmissionControl.cost(null));
+        assertEquals(7, AdmissionControl.batchCost(List.of(
+                new UserBasketRequest(List.of(new BookItem("A", 2), new BookItem("B", 1))),
+                new UserBasketRequest(List.of()))));
+    }
+
+    @Test
+    @DisplayName("Key clients on their address, and on the client header only once it is configured")
+    void testInterceptorClientKey() {
+        AdmissionInterceptor byAddress = interceptor(null);
+        for (int i = 0; i < 2; i++) {
+            byAddress.preHandle(request("10.0.0.1", "client-" + i), new MockHttpServletResponse(), null);
+        }
+        assertThrows(TooManyRequestsException.class,
+                () -> byAddress.preHandle(request("10.0.0.1", "client-2"), new MockHttpServletResponse(), null));
+        assertDoesNotThrow(
+                () -> byAddress.preHandle(request("10.0.0.2", "client-0"), new MockHttpServletResponse(), null));
+
+        AdmissionInterceptor byHeader = interceptor("X-Client-Id");
+        for (int i = 0; i < 2; i++) {
+            byHeader.preHandle(request("10.0.0.1", "client-" + i), new MockHttpServletResponse(), null);
+        }
+        assertDoesNotThrow(
+                () -> byHeader.preHandle(request("10.0.0.1", "client-2"), new MockHttpServletResponse(), null));
+        byHeader.preHandle(request("10.0.0.3", null), new MockHttpServletResponse(), null);
+        byHeader.preHandle(request("10.0.0.3", null), new MockHttpServletResponse(), null);
+        assertThrows(TooManyRequestsException.class,
+                () -> byHeader.preHandle(request("10.0.0.3", " "), new MockHttpServletResponse(), null));
+    }
+
+    private AdmissionInterceptor interceptor(String clientHeader) {
+        AdmissionProperties properties = properties(true, clientHeader, 10, 2, 100);
+        return new AdmissionInterceptor(new AdmissionControl(properties, new PricingMetrics(registry), now::get),
+                properties);
+    }
+
+    private static MockHttpServletRequest request(String remoteAddress, String clientId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/price/calculate");
+        request.setRemoteAddr(remoteAddress);
+        if (clientId != null) {
+            request.addHeader("X-Client-Id", clientId);
+        }
+        return request;
+    }
+
+    private AdmissionControl admission(boolean enabled, double rate, int burst, long maxInFlightCost) {
+        return new AdmissionControl(properties(enabled, null, rate, burst, maxInFlightCost),
+                new PricingMetrics(registry), now::get);
+    }
+
+    private static AdmissionProperties properties(boolean enabled, String clientHeader, double rate, int burst,
+                                                  long maxInFlightCost) {
+        return new AdmissionProperties(enabled, clientHeader, rate, burst, maxInFlightCost,
+                Duration.ofMinutes(10), 1_000);
+    }
+}
@@ -0,0 +1,162 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.config.AdmissionProperties;
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
+import com.bnpp.kata.bookdiscount.app.exception.TooManyRequestsException;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.service.engine.BasketShape;
+import com.bnpp.kata.bookdiscount.app.service.engine.SolveContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncPricingServiceTest {
+
+    private static final List<BookItem> KATA_BASKET = List.of(
+            new BookItem("Clean Code", 2), new BookItem("The Clean Coder", 2), new BookItem("Clean Architecture", 2),
+            new BookItem("TDD", 1), new BookItem("Legacy Code", 1));
+    private static final List<BookItem> SIX_TITLES = List.of(
+            new BookItem("A", 3), new BookItem("B", 3), new BookItem("C", 2),
+            new BookItem("D", 2), new BookItem("E", 1), new BookItem("F", 1));
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PricingMetrics metrics = new PricingMetrics(registry);
+    private final AdmissionControl admission = new AdmissionControl(AdmissionProperties.defaults(), metrics);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger solves = new AtomicInteger();
+    private AsyncPricingService service;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Price constant-time baskets on the caller's thread and the others on the pool, at the synchronous price")
+    void testPricesLikeTheSynchronousService() {
+        BookPriceService priceService = new BookPriceService(PricingProperties.defaults(), metrics);
+        service = new AsyncPricingService(priceService, properties(2, 10), metrics);
+
+        CompletableFuture<Double> kata = price(KATA_BASKET, new SolveContext());
+        assertTrue(kata.isDone());
+        assertEquals(320.0, kata.join());
+
+        SolveContext context = SolveContext.explaining();
+        double price = price(SIX_TITLES, context).join();
+        assertEquals(priceService.calculatePrice(SIX_TITLES), price);
+        assertFalse(context.grouping().groups().isEmpty());
+
+        assertThrows(InvalidBasketException.class, () -> price(List.of(), new SolveContext()));
+    }
+
+    @Test
+    @DisplayName("Refuse baskets with 429 once the pool is busy and its queue is full")
+    void testSaturatedQueueRefuses() throws Exception {
+        service = new AsyncPricingService(blockingPriceService(), properties(1, 1), metrics);
+
+        CompletableFuture<Double> running = price(SIX_TITLES, new SolveContext());
+        CompletableFuture<Double> queued = price(SIX_TITLES, new SolveContext());
+        TooManyRequestsException refused = assertThrows(TooManyRequestsException.class,
+                () -> price(SIX_TITLES, new SolveContext()));
+        assertEquals(1, refused.getRetryAfterSeconds());
+        assertEquals(1.0, registry.get("bookdiscount.pricing.async.queued").gauge().value());
+        assertEquals(1.0, registry.get("bookdiscount.admission.rejected").tag("reason", "queue").counter().count());
+
+        release.countDown();
+        assertEquals(1.0, running.get());
+        assertEquals(1.0, queued.get());
+        assertEquals(2, solves.get());
+    }
+
+    @Test
+    @DisplayName("Take a cancelled basket out of the queue without pricing it")
+    void testCancelledBasketIsNotPriced() {
+        service = new AsyncPricingService(blockingPriceService(), properties(1, 1), metrics);
+
+        CompletableFuture<Double> running = price(SIX_TITLES, new SolveContext());
+        CompletableFuture<Double> abandoned = price(SIX_TITLES, new SolveContext());
+        abandoned.cancel(false);
+        assertEquals(0.0, registry.get("bookdiscount.pricing.async.queued").gauge().value());
+        CompletableFuture<Double> next = price(SIX_TITLES, new SolveContext());
+
+        release.countDown();
+        assertEquals(1.0, running.join());
+        assertEquals(1.0, next.join());
+        assertTrue(abandoned.isCancelled());
+        assertEquals(2, solves.get());
+        assertEquals(0, admission.inFlightCost());
+    }
+
+    @Test
+    @DisplayName("Keep counting a cancelled basket's cost while its solve still runs")
+    void testPermitOutlivesCancelledRunningSolve() throws Exception {
+        service = new AsyncPricingService(blockingPriceService(), properties(1, 1), metrics);
+
+        CompletableFuture<Double> running = price(SIX_TITLES, new SolveContext());
+        CompletableFuture<Double> queued = price(SIX_TITLES, new SolveContext());
+        while (solves.get() == 0) {
+            Thread.sleep(1);
+        }
+        running.cancel(false);
+        queued.cancel(false);
+        assertEquals(AdmissionControl.cost(SIX_TITLES), admission.inFlightCost());
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (admission.inFlightCost() != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, admission.inFlightCost());
+        assertEquals(1, solves.get());
+    }
+
+    private CompletableFuture<Double> price(List<BookItem> items, SolveContext context) {
+        return service.calculatePrice(items, context, admission.acquire(AdmissionControl.cost(items)));
+    }
+
+    /**
+     * A price service whose every basket needs a solve, and whose solves wait for {@link #release}.
+     */
+    private BookPriceService blockingPriceService() {
+        return new BookPriceService(PricingProperties.defaults(), metrics) {
+            @Override
+            public boolean pricedInConstantTime(BasketShape shape, SolveContext context) {
+                return false;
+            }
+
+            @Override
+            public double priceShape(BasketShape shape, SolveContext context) {
+                solves.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(ex);
+                }
+                return 1.0;
+            }
+        };
+    }
+
+    private static PricingProperties properties(int parallelism, int queueCapacity) {
+        return PricingProperties.defaults()
+                .withAsync(new PricingProperties.Async(parallelism, queueCapacity, Duration.ofSeconds(5)));
+    }
+}
@@ -0,0 +1,128 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.catalog.CatalogService;
+import com.bnpp.kata.bookdiscount.app.catalog.TitleDictionary;
+import com.bnpp.kata.bookdiscount.app.config.AdmissionProperties;
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
+import com.bnpp.kata.bookdiscount.app.exception.TooManyRequestsException;
+import com.bnpp.kata.bookdiscount.app.model.BasketSessionResponse;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BasketSessionServiceTest {
+
+    private static final List<String> TITLES = List.of("Clean Code", "The Clean Coder", "Clean Architecture",
+            "TDD", "Legacy Code", "Refactoring");
+
+    private final BookPriceService priceService = new BookPriceService();
+
+    @Test
+    @DisplayName("Price every edit exactly like a full calculation of the same contents")
+    void testEditsMatchFullCalculation() {
+        BasketSessionService sessions = sessions(PricingProperties.defaults().sessions());
+        String sessionId = sessions.open(null).sessionId();
+        Map<String, Integer> contents = new LinkedHashMap<>();
+        Random random = new Random(11);
+        for (int edit = 0; edit < 500; edit++) {
+            String title = TITLES.get(random.nextInt(TITLES.size()));
+            int held = contents.getOrDefault(title, 0);
+            int delta = random.nextInt(4) - Math.min(held, random.nextInt(3));
+            contents.merge(title, delta, Integer::sum);
+            String typed = random.nextBoolean() ? title.toUpperCase() : " " + title;
+
+            BasketSessionResponse response = sessions.edit(sessionId, List.of(new BookItem(typed, delta)));
+
+            List<BookItem> items = new ArrayList<>();
+            contents.forEach((title2, quantity) -> items.add(new BookItem(title2, quantity)));
+            double expected = contents.values().stream().allMatch(quantity -> quantity == 0)
+                    ? 0.0 : priceService.calculatePrice(items);
+            assertEquals(expected, response.bestOfferedPrice(), 1e-9, contents::toString);
+        }
+    }
+
+    @Test
+    @DisplayName("Reject removing more copies than held, leaving the session unchanged")
+    void testRemovingTooManyIsAtomic() {
+        BasketSessionService sessions = sessions(PricingProperties.defaults().sessions());
+        String sessionId = sessions.open(List.of(new BookItem("Clean Code", 1), new BookItem("TDD", 1))).sessionId();
+
+        InvalidBasketException ex = assertThrows(InvalidBasketException.class, () -> sessions.edit(sessionId,
+                List.of(new BookItem("Legacy Code", 1), new BookItem("clean code", -2))));
+
+        assertEquals("Cannot remove 2 copies of 'Clean Code': the basket holds 1", ex.getMessage());
+        BasketSessionResponse current = sessions.current(sessionId);
+        assertEquals(List.of(new BookItem("Clean Code", 1), new BookItem("TDD", 1)), current.bookItemList());
+        assertEquals(95.0, current.bestOfferedPrice(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Answer 404 for unknown, closed and expired sessions")
+    void testMissingSessions() throws InterruptedException {
+        BasketSessionService sessions = sessions(new PricingProperties.Sessions(Duration.ofMillis(50), 10, 10));
+        assertEquals(HttpStatus.NOT_FOUND,
+                assertThrows(InvalidBasketException.class, () -> sessions.current("unknown")).getStatus());
+
+        String closed = sessions.open(null).sessionId();
+        sessions.close(closed);
+        assertThrows(InvalidBasketException.class, () -> sessions.current(closed));
+
+        String idle = sessions.open(null).sessionId();
+        Thread.sleep(200);
+        assertThrows(InvalidBasketException.class, () -> sessions.edit(idle, List.of(new BookItem("TDD", 1))));
+    }
+
+    @Test
+    @DisplayName("Refuse titles beyond the per-session bound")
+    void testMaximumTitles() {
+        BasketSessionService sessions = sessions(new PricingProperties.Sessions(Duration.ofMinutes(1), 10, 2));
+        String sessionId = sessions.open(List.of(new BookItem("Clean Code", 1), new BookItem("TDD", 1))).sessionId();
+
+        InvalidBasketException ex = assertThrows(InvalidBasketException.class,
+                () -> sessions.edit(sessionId, List.of(new BookItem("Legacy Code", 1))));
+
+        assertEquals("Basket session must not hold more than 2 titles", ex.getMessage());
+        assertEquals(2, sessions.edit(sessionId, List.of(new BookItem("TDD", 1))).bookItemList().size());
+    }
+
+    @Test
+    @DisplayName("Refuse to open or edit a session while the admission budget is spent, leaving it as it was")
+    void testAdmissionBudget() {
+        AdmissionControl admission = new AdmissionControl(
+                new AdmissionProperties(true, null, 200, 400, 10, Duration.ofMinutes(10), 1_000), PricingMetrics.noop());
+        BasketSessionService sessions = sessions(PricingProperties.defaults().sessions(), admission);
+        String sessionId = sessions.open(List.of(new BookItem("Clean Code", 1))).sessionId();
+
+        try (AdmissionControl.Permit busy = admission.acquire(10)) {
+            assertThrows(TooManyRequestsException.class,
+                    () -> sessions.edit(sessionId, List.of(new BookItem("TDD", 1))));
+            assertThrows(TooManyRequestsException.class, () -> sessions.open(List.of(new BookItem("TDD", 1))));
+            assertEquals(List.of(new BookItem("Clean Code", 1)), sessions.current(sessionId).bookItemList());
+        }
+        assertEquals(95.0, sessions.edit(sessionId, List.of(new BookItem("TDD", 1))).bestOfferedPrice(), 1e-9);
+        assertEquals(0, admission.inFlightCost());
+    }
+
+    private static BasketSessionService sessions(PricingProperties.Sessions settings) {
+        return sessions(settings, new AdmissionControl(AdmissionProperties.defaults(), PricingMetrics.noop()));
+    }
+
+    private static BasketSessionService sessions(PricingProperties.Sessions settings, AdmissionControl admission) {
+        PricingProperties properties = PricingProperties.defaults().withSessions(settings);
+        CatalogService catalogs = new CatalogService(properties);
+        BookPriceService priceService = new BookPriceService(catalogs, new TitleDictionary(properties), PricingMetrics.noop());
+        return new BasketSessionService(priceService, catalogs, admission, properties, PricingMetrics.noop());
+    }
+}
@@ -1,11 +1,15 @@
 package com.bnpp.kata.bookdiscount.app.service;
 
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
 import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
 import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -196,6 +200,42 @@ class BookPriceServiceTest {
         assertThrows(InvalidBasketException.class, () -> service.calculatePrice(items));
     }
 
+    @Test
+    @DisplayName("Report the first invalid item in basket order, before checking for a positive quantity")
+    void testValidationMessagesAndPrecedence() {
+        assertEquals("Basket must not be null", assertThrows(InvalidBasketException.class,
+                () -> service.calculatePrice(null)).getMessage());
+        assertEquals("Basket must contain at least one entry", assertThrows(InvalidBasketException.class,
+                () -> service.calculatePrice(List.of())).getMessage());
+        assertEquals("Quantity for book 'Clean Code' must not be negative", assertThrows(InvalidBasketException.class,
+                () -> service.calculatePrice(List.of(
+                        new BookItem("TDD", 0),
+                        new BookItem(" Clean Code ", -1),
+                        new BookItem("  ", 1)
+                ))).getMessage());
+        assertEquals("Basket item must not be null", assertThrows(InvalidBasketException.class,
+                () -> service.calculatePrice(Arrays.asList(
+                        new BookItem("TDD", 1),
+                        null,
+                        new BookItem("Clean Code", -1)
+                ))).getMessage());
+        assertEquals("Book title must not be null or empty", assertThrows(InvalidBasketException.class,
+                () -> service.calculatePrice(List.of(
+                        new BookItem("\t", 1),
+                        new BookItem("Clean Code", null)
+                ))).getMessage());
+        assertEquals("Quantity for book 'Clean Code' must not be null", assertThrows(InvalidBasketException.class,
+                () -> service.calculatePrice(List.of(
+                        new BookItem("Clean Code", null),
+                        new BookItem("TDD", -1)
+                ))).getMessage());
+        assertEquals("Basket must contain at least one book with quantity > 0", assertThrows(InvalidBasketException.class,
+                () -> service.calculatePrice(List.of(
+                        new BookItem("Clean Code", 0),
+                        new BookItem("TDD", 0)
+                ))).getMessage());
+    }
+
     // ----------------------------------------------------------------------
     //  EDGE CASE TESTS
     // ----------------------------------------------------------------------
@@ -231,4 +271,44 @@ class BookPriceServiceTest {
         );
         assertEquals(500.0, service.calculatePrice(items), 0.01);
     }
+
+    @Test
+    @DisplayName("Price wholesale quantities of every title in the series")
+    void testWholesaleQuantities() {
+        List<BookItem> items = List.of(
+                new BookItem("Clean Code", 10_000),
+                new BookItem("The Clean Coder", 10_000),
+                new BookItem("Clean Architecture", 10_000),
+                new BookItem("TDD", 8_000),
+                new BookItem("Legacy Code", 8_000)
+        );
+        // 8,000 sets of five + 2,000 sets of three → 2,000 (5 + 3) pairs re-split as (4 + 4)
+        assertEquals(6_000 * 187.5 + 4_000 * 160.0, service.calculatePrice(items), 0.01);
+    }
+
+    // ----------------------------------------------------------------------
+    //  METRICS
+    // ----------------------------------------------------------------------
+
+    @Test
+    @DisplayName("Record phase timers, basket histograms and rejection counters")
+    void testMetricsAreRecorded() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BookPriceService instrumented = new BookPriceService(PricingProperties.defaults(), new PricingMetrics(registry));
+
+        instrumented.calculatePrice(List.of(
+                new BookItem("Clean Code", 2),
+                new BookItem("TDD", 1)
+        ));
+        assertThrows(InvalidBasketException.class, () -> instrumented.calculatePrice(List.of(
+                new BookItem("Clean Code", -1)
+        )));
+        assertThrows(InvalidBasketException.class, () -> instrumented.calculatePrice(Collections.singletonList(null)));
+
+        assertEquals(1, registry.get("bookdiscount.pricing").tag("titles", "2").timer().count());
+        assertEquals(1, registry.get("bookdiscount.pricing.phase").tag("phase", "solve").timer().count());
+        assertEquals(3.0, registry.get("bookdiscount.basket.quantity").summary().totalAmount(), 0.0);
+        assertEquals(1.0, registry.get("bookdiscount.basket.rejected").tag("reason", "negative-quantity").counter().count());
+        assertEquals(1.0, registry.get("bookdiscount.basket.rejected").tag("reason", "null-item").counter().count());
+    }
 }
@@ -0,0 +1,118 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.config.BulkProperties;
+import com.bnpp.kata.bookdiscount.app.config.AdmissionProperties;
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkPricingServiceTest {
+
+    private static final List<String> TITLES = List.of("Clean Code", "The Clean Coder", "Clean Architecture",
+            "TDD", "Legacy Code", "Refactoring");
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final StreamingPricingService streaming = new StreamingPricingService(new BookPriceService(), objectMapper,
+            new AdmissionControl(AdmissionProperties.defaults(), PricingMetrics.noop()),
+            PricingProperties.defaults().withStreaming(new PricingProperties.Streaming(DataSize.ofBytes(400))));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Write exactly what the streaming endpoint writes, in input order, whatever the chunking")
+    void testMatchesStreamingFeed() throws Exception {
+        Random random = new Random(5);
+        StringBuilder feed = new StringBuilder();
+        for (int line = 0; line < 2000; line++) {
+            switch (random.nextInt(20)) {
+                case 0 -> feed.append("not json\n");
+                case 1 -> feed.append("  \n");
+                case 2 -> feed.append("{\"bookItemList\":[{\"title\":\"TDD\",\"quantity\":-1}]}\r\n");
+                case 3 -> feed.append(random.nextBoolean() ? "null\n" : "{\"bookItemList\":[null]}\n");
+                case 4 -> feed.append(" ".repeat(random.nextInt(2_000))).append(basket(random)).append('\n');
+                default -> feed.append(basket(random)).append(random.nextBoolean() ? "\n" : "\r\n");
+            }
+        }
+        feed.append(basket(random));
+        byte[] input = feed.toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        streaming.priceFeed(new ByteArrayInputStream(input), expected);
+
+        Path in = Files.write(directory.resolve("baskets.ndjson"), input);
+        for (String chunkSize : List.of("1B", "100B", "4KB", "4MB")) {
+            Path out = directory.resolve("prices-" + chunkSize + ".ndjson");
+            BulkPricingService.Summary summary = bulk(4, chunkSize, true).priceFile(in, out);
+
+            assertEquals(expected.toString(StandardCharsets.UTF_8), Files.readString(out), chunkSize);
+            assertEquals(expected.toString(StandardCharsets.UTF_8).lines().count(),
+                    summary.baskets() + summary.errors(), chunkSize);
+        }
+    }
+
+    @Test
+    @DisplayName("Leave out the baskets without echo, and write nothing for an empty file")
+    void testPriceOnlyAndEmptyFile() throws Exception {
+        Path in = Files.writeString(directory.resolve("baskets.ndjson"), """
+                {"bookItemList":[{"title":"Clean Code","quantity":1},{"title":"TDD","quantity":1}]}
+
+                not json
+                """);
+        Path out = directory.resolve("prices.ndjson");
+        BulkPricingService.Summary summary = bulk(2, "16B", false).priceFile(in, out);
+
+        List<String> lines = Files.readAllLines(out);
+        assertEquals(2, lines.size());
+        assertEquals(95.0, objectMapper.readTree(lines.get(0)).get("bestOfferedPrice").asDouble());
+        assertEquals(false, objectMapper.readTree(lines.get(0)).has("userRequest"));
+        assertEquals(3, objectMapper.readTree(lines.get(1)).get("line").asInt());
+        assertEquals(1, summary.baskets());
+        assertEquals(1, summary.errors());
+
+        Path empty = Files.writeString(directory.resolve("empty.ndjson"), "");
+        assertEquals(0, bulk(2, "16B", false).priceFile(empty, out).baskets());
+        assertEquals(0, Files.size(out));
+    }
+
+    @Test
+    @DisplayName("Refuse to write the prices over the input file")
+    void testRejectOutputOverInput() throws Exception {
+        String baskets = "{\"bookItemList\":[{\"title\":\"Clean Code\",\"quantity\":1}]}\n";
+        Path in = Files.writeString(directory.resolve("baskets.ndjson"), baskets);
+
+        assertThrows(IllegalArgumentException.class, () -> bulk(2, "16B", false).priceFile(in, in));
+        assertThrows(IllegalArgumentException.class,
+                () -> bulk(2, "16B", false).priceFile(in, directory.resolve("./baskets.ndjson")));
+        assertEquals(baskets, Files.readString(in));
+    }
+
+    private BulkPricingService bulk(int parallelism, String chunkSize, boolean echo) {
+        return new BulkPricingService(streaming, objectMapper,
+                new BulkProperties(null, null, parallelism, DataSize.parse(chunkSize), echo));
+    }
+
+    private static String basket(Random random) {
+        StringBuilder basket = new StringBuilder("{\"bookItemList\":[");
+        int titles = 1 + random.nextInt(TITLES.size());
+        for (int i = 0; i < titles; i++) {
+            basket.append(i > 0 ? "," : "").append("{\"title\":\"").append(TITLES.get(i))
+                    .append("\",\"quantity\":").append(1 + random.nextInt(4)).append('}');
+        }
+        return basket.append("]}").toString();
+    }
+}
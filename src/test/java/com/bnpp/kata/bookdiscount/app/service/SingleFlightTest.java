@@ -0,0 +1,120 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+    private static final int FOLLOWERS = 8;
+
+    private final SingleFlight<String, Integer> flights = new SingleFlight<>();
+
+    @Test
+    @DisplayName("Run one computation for concurrent calls with the same key, and none once it is over")
+    void testConcurrentCallsShareOneComputation() throws Exception {
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(FOLLOWERS + 1);
+        try {
+            CompletableFuture<Integer> leader = CompletableFuture.supplyAsync(() -> flights.run("bundle", () -> {
+                computations.incrementAndGet();
+                started.countDown();
+                await(release);
+                return 42;
+            }), callers);
+            started.await();
+            List<Thread> waiting = new ArrayList<>();
+            List<CompletableFuture<Integer>> followers = new ArrayList<>();
+            for (int i = 0; i < FOLLOWERS; i++) {
+                followers.add(CompletableFuture.supplyAsync(() -> {
+                    synchronized (waiting) {
+                        waiting.add(Thread.currentThread());
+                    }
+                    return flights.run("bundle", computations::incrementAndGet);
+                }, callers));
+            }
+            awaitParked(waiting, FOLLOWERS);
+            assertEquals(1, flights.size());
+            release.countDown();
+
+            assertEquals(42, leader.join());
+            for (CompletableFuture<Integer> follower : followers) {
+                assertEquals(42, follower.join());
+            }
+            assertEquals(1, computations.get());
+            assertEquals(0, flights.size());
+            assertEquals(2, flights.run("bundle", computations::incrementAndGet));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Rethrow the computation's exception to every caller and forget the key")
+    void testFailureReachesEveryCaller() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("solver failed");
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<Integer> leader = CompletableFuture.supplyAsync(() -> flights.run("bundle", () -> {
+                started.countDown();
+                await(release);
+                throw failure;
+            }), callers);
+            started.await();
+            List<Thread> waiting = new ArrayList<>();
+            CompletableFuture<Integer> follower = CompletableFuture.supplyAsync(() -> {
+                synchronized (waiting) {
+                    waiting.add(Thread.currentThread());
+                }
+                return flights.run("bundle", () -> 0);
+            }, callers);
+            awaitParked(waiting, 1);
+            release.countDown();
+
+            assertSame(failure, assertThrows(Exception.class, leader::join).getCause());
+            assertSame(failure, assertThrows(Exception.class, follower::join).getCause());
+            assertEquals(0, flights.size());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits until 'callers' threads have called in and are all parked, i.e. waiting on the leader's flight.
+     */
+    private static void awaitParked(List<Thread> waiting, int callers) throws InterruptedException {
+        while (true) {
+            synchronized (waiting) {
+                if (waiting.size() == callers
+                        && waiting.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+                    return;
+                }
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.bnpp.kata.bookdiscount.app.service;
+
+import com.bnpp.kata.bookdiscount.app.config.AdmissionProperties;
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingPricingServiceTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().build();
+    private final StreamingPricingService streaming = new StreamingPricingService(new BookPriceService(), objectMapper,
+            new AdmissionControl(AdmissionProperties.defaults(), PricingMetrics.noop()),
+            PricingProperties.defaults().withStreaming(new PricingProperties.Streaming(DataSize.ofKilobytes(1))));
+
+    @Test
+    @DisplayName("Answer a null line or a null item with that line's error and keep pricing the feed")
+    void testNullLinesFailOnTheirOwn() throws Exception {
+        String feed = """
+        {"bookItemList":[{"title":"Clean Code","quantity":1}]}
+        null
+        {"bookItemList":[null]}
+        {"bookItemList":[{"title":"Clean Code","quantity":1},{"title":"TDD","quantity":1}]}
+        """;
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        streaming.priceFeed(new ByteArrayInputStream(feed.getBytes(StandardCharsets.UTF_8)), output);
+        List<JsonNode> lines = output.toString(StandardCharsets.UTF_8).lines().map(objectMapper::readTree).toList();
+
+        assertEquals(4, lines.size());
+        assertEquals(50.0, lines.get(0).get("bestOfferedPrice").asDouble());
+        assertEquals(2, lines.get(1).get("line").asInt());
+        assertEquals("Basket must not be null", lines.get(1).get("error").asString());
+        assertEquals(3, lines.get(2).get("line").asInt());
+        assertEquals("Basket item must not be null", lines.get(2).get("error").asString());
+        assertEquals(95.0, lines.get(3).get("bestOfferedPrice").asDouble());
+    }
+
+    @Test
+    @DisplayName("Skip a line longer than the maximum up to its line break, answer it with an error and go on")
+    void testOverlongLineFailsOnItsOwn() throws Exception {
+        String basket = "{\"bookItemList\":[{\"title\":\"Clean Code\",\"quantity\":1}]}";
+        String feed = basket + "\n"
+                + "{\"bookItemList\":[" + "{\"title\":\"TDD\",\"quantity\":1},".repeat(20_000) + "\n"
+                + " ".repeat(900) + basket + "\n"
+                + "x".repeat(200_000);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        streaming.priceFeed(new ByteArrayInputStream(feed.getBytes(StandardCharsets.UTF_8)), output);
+        List<JsonNode> lines = output.toString(StandardCharsets.UTF_8).lines().map(objectMapper::readTree).toList();
+
+        assertEquals(4, lines.size());
+        assertEquals(50.0, lines.get(0).get("bestOfferedPrice").asDouble());
+        assertEquals(2, lines.get(1).get("line").asInt());
+        assertEquals("Line is longer than 1024 bytes", lines.get(1).get("error").asString());
+        assertEquals(50.0, lines.get(2).get("bestOfferedPrice").asDouble());
+        assertEquals(4, lines.get(3).get("line").asInt());
+        assertEquals("Line is longer than 1024 bytes", lines.get(3).get("error").asString());
+    }
+
+    @Test
+    @DisplayName("Answer a basket refused admission with that line's error and price the next ones once admitted")
+    void testLinesHoldAdmissionPermits() throws Exception {
+        AdmissionControl admission = new AdmissionControl(
+                new AdmissionProperties(true, null, 200, 400, 10, Duration.ofMinutes(10), 1_000), PricingMetrics.noop());
+        StreamingPricingService admitted = new StreamingPricingService(new BookPriceService(), objectMapper,
+                admission, PricingProperties.defaults());
+        String feed = """
+        {"bookItemList":[{"title":"Clean Code","quantity":1}]}
+        """;
+
+        ByteArrayOutputStream refused = new ByteArrayOutputStream();
+        try (AdmissionControl.Permit busy = admission.acquire(10)) {
+            admitted.priceFeed(new ByteArrayInputStream(feed.getBytes(StandardCharsets.UTF_8)), refused);
+        }
+        ByteArrayOutputStream priced = new ByteArrayOutputStream();
+        admitted.priceFeed(new ByteArrayInputStream(feed.getBytes(StandardCharsets.UTF_8)), priced);
+
+        assertEquals("Too many baskets being priced, retry shortly",
+                objectMapper.readTree(refused.toString(StandardCharsets.UTF_8)).get("error").asString());
+        assertEquals(50.0, objectMapper.readTree(priced.toString(StandardCharsets.UTF_8)).get("bestOfferedPrice").asDouble());
+        assertEquals(0, admission.inFlightCost());
+    }
+}
@@ -0,0 +1,60 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingPricingEngineTest {
+
+    @Test
+    @DisplayName("Solve a recurring shape once and serve later calls from the cache")
+    void testRecurringShapeIsSolvedOnce() {
+        AtomicInteger solves = new AtomicInteger();
+        CachingPricingEngine engine = new CachingPricingEngine((counts, context) -> {
+            solves.incrementAndGet();
+            return 320.0;
+        }, 100);
+
+        assertEquals(320.0, engine.price(new int[]{2, 2, 2, 1, 1}));
+        assertEquals(320.0, engine.price(new int[]{2, 2, 2, 1, 1}));
+        assertEquals(320.0, engine.price(new int[]{2, 2, 2, 1, 1}));
+
+        assertEquals(1, solves.get());
+        assertEquals(2, engine.stats().hitCount());
+        assertEquals(1, engine.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("Keep the number of cached shapes within the configured maximum")
+    void testCacheIsBounded() {
+        CachingPricingEngine engine = new CachingPricingEngine((counts, context) -> counts[0] * 50.0, 10);
+        for (int copies = 1; copies <= 1_000; copies++) {
+            engine.price(new int[]{copies});
+        }
+        assertTrue(engine.estimatedSize() <= 10);
+        assertTrue(engine.stats().evictionCount() >= 990);
+    }
+
+    @Test
+    @DisplayName("Keep the shapes of engines sharing a cache apart, within one maximum for them all")
+    void testSharedCacheIsBoundedAcrossDelegates() {
+        CachingPricingEngine atFifty = new CachingPricingEngine((counts, context) -> counts[0] * 50.0, 10);
+        CachingPricingEngine atForty = atFifty.sharing((counts, context) -> counts[0] * 40.0, 1);
+
+        assertEquals(100.0, atFifty.price(new int[]{2}));
+        assertEquals(80.0, atForty.price(new int[]{2}));
+        assertEquals(100.0, atFifty.price(new int[]{2}));
+        assertEquals(1, atForty.stats().hitCount());
+
+        for (int copies = 1; copies <= 1_000; copies++) {
+            atFifty.price(new int[]{copies});
+            atForty.price(new int[]{copies});
+        }
+        assertTrue(atFifty.estimatedSize() <= 10);
+        assertEquals(atFifty.estimatedSize(), atForty.estimatedSize());
+    }
+}
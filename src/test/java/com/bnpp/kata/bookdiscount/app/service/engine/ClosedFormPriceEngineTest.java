@@ -0,0 +1,57 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class ClosedFormPriceEngineTest {
+
+    private static final DiscountTable KATA_TABLE = new DiscountTable(50.0, DiscountTable.KATA_DISCOUNTS);
+
+    private PricingEngine reference;
+    private PricingEngine engine;
+
+    @BeforeEach
+    void setup() {
+        reference = new ReferencePriceEngine(KATA_TABLE);
+        engine = new ClosedFormPriceEngine(KATA_TABLE, reference);
+    }
+
+    @Test
+    @DisplayName("Return exactly the reference price for every shape up to 5 titles and 8 copies")
+    void testMatchesReferenceOnAllSmallShapes() {
+        for (int[] shape : PrimitivePriceEngineTest.sortedShapes(5, 8)) {
+            assertEquals(reference.price(shape), engine.price(shape), () -> Arrays.toString(shape));
+        }
+    }
+
+    @Test
+    @DisplayName("Price 10,000 copies of each title without time proportional to the quantity")
+    void testWholesaleQuantities() {
+        double price = assertTimeoutPreemptively(Duration.ofMillis(100),
+                () -> engine.price(new int[]{10_000, 10_000, 10_000, 10_000, 10_000}));
+        assertEquals(10_000 * 187.5, price);
+    }
+
+    @Test
+    @DisplayName("Delegate baskets with more titles than the series to the fallback engine")
+    void testMoreThanFiveTitlesUsesFallback() {
+        PricingEngine closedForm = new ClosedFormPriceEngine(KATA_TABLE, (counts, context) -> -1.0);
+        assertEquals(-1.0, closedForm.price(new int[]{1, 1, 1, 1, 1, 1}));
+    }
+
+    @Test
+    @DisplayName("Refuse discount tables other than the kata one")
+    void testRejectsOtherTables() {
+        DiscountTable other = new DiscountTable(50.0, Map.of(2, 0.10));
+        assertThrows(IllegalArgumentException.class, () -> new ClosedFormPriceEngine(other, reference));
+    }
+}
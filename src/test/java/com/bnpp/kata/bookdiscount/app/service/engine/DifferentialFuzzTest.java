@@ -0,0 +1,495 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import com.bnpp.kata.bookdiscount.app.config.PricingProperties;
+import com.bnpp.kata.bookdiscount.app.exception.InvalidBasketException;
+import com.bnpp.kata.bookdiscount.app.model.BookItem;
+import com.bnpp.kata.bookdiscount.app.service.BookPriceService;
+import com.bnpp.kata.bookdiscount.app.service.PricingMetrics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Differential fuzzing of every engine against the reference DP, and of the whole service
+ * against the engines, on random and adversarial baskets.
+ * <p>
+ * Each property runs for a time box ({@code -Dbookdiscount.fuzz.millis}, 1500 by default) after a
+ * minimum number of cases, from a random seed printed with any failure and replayed with
+ * {@code -Dbookdiscount.fuzz.seed}. Every engine that can price a case within its state budget must
+ * agree on it to the minor unit; an engine exceeding its budget fails the case, so a change that
+ * makes a solver explore far more states fails here as a performance regression. A failing case is
+ * shrunk (titles dropped, quantities and prices lowered) to a minimal counterexample before being reported.
+ */
+class DifferentialFuzzTest {
+
+    private static final long MILLIS = Long.getLong("bookdiscount.fuzz.millis", 1500);
+    private static final long SEED = Long.getLong("bookdiscount.fuzz.seed", System.nanoTime());
+    private static final int MIN_CASES = 200;
+
+    /**
+     * Sorted count vectors the reference DP may have to visit, and copies it may have to recurse through;
+     * beyond that it is too slow to run, or too deep for its stream-based recursion.
+     */
+    private static final long REFERENCE_STATES = 20_000;
+    private static final long REFERENCE_COPIES = 500;
+
+    /**
+     * Remaining-count vectors the unpruned subset DP may visit; each one tries every subset of titles.
+     * It recurses once per group, so copies are bounded too.
+     */
+    private static final long SUBSET_STATES = 5_000;
+    private static final long SUBSET_COPIES = 1_000;
+
+    /**
+     * States the faster DP engines are given for baskets small enough for them, and a wall-clock bound.
+     */
+    private static final long DP_STATES = 200_000;
+    private static final Duration DP_TIME = Duration.ofSeconds(2);
+
+    private static final List<DiscountTable> TABLES = List.of(
+            new DiscountTable(50.0, DiscountTable.KATA_DISCOUNTS),
+            new DiscountTable(50.0, Map.of(2, 0.05, 3, 0.12, 4, 0.15, 5, 0.21)),
+            new DiscountTable(50.0, Map.of(2, 0.10, 3, 0.30)),
+            new DiscountTable(50.0, Map.of(2, 0.05, 3, 0.10, 4, 0.20, 5, 0.25, 6, 0.30, 7, 0.35)));
+
+    private static final double[] PRICE_LEVELS = {50.0, 20.0, 35.5, 19.99, 33.33, 0.01, 7.05};
+
+    private static final List<String> TITLES = List.of("Clean Code", "The Clean Coder", "Clean Architecture",
+            "TDD", "Legacy Code", "Refactoring", "Domain Driven Design");
+
+    private final Map<String, List<Candidate>> uniformEngines = new HashMap<>();
+
+    @Test
+    @DisplayName("Price every generated basket identically with every engine, and never below it with the greedy bound")
+    void testEnginesAgree() {
+        Random random = new Random(SEED);
+        long deadline = System.nanoTime() + MILLIS * 1_000_000;
+        int cases = 0;
+        while (cases < MIN_CASES || System.nanoTime() < deadline) {
+            Case basket = generate(random);
+            String discrepancy = discrepancy(basket);
+            if (discrepancy != null) {
+                Case minimal = shrink(basket, Case::smaller, smaller -> discrepancy(smaller) != null);
+                fail("Seed %d, case %d: %s%n  minimal case: %s%n  %s".formatted(
+                        SEED, cases, basket, minimal, discrepancy(minimal)));
+            }
+            cases++;
+        }
+        assertTrue(cases >= MIN_CASES);
+    }
+
+    @Test
+    @DisplayName("Price baskets with case-variant duplicate titles and zero quantities like their merged shape")
+    void testServiceMatchesEngines() {
+        PricingProperties properties = PricingProperties.defaults().withBudget(
+                new PricingProperties.Budget(0, Duration.ZERO, PricingProperties.Budget.OnExceeded.REJECT));
+        BookPriceService service = new BookPriceService(properties, PricingMetrics.noop());
+        DiscountTable table = TABLES.getFirst();
+        PricingEngine oracle = new GroupHistogramEngine(table, new PrimitivePriceEngine(table));
+
+        Random random = new Random(SEED);
+        long deadline = System.nanoTime() + MILLIS * 1_000_000;
+        int cases = 0;
+        while (cases < MIN_CASES || System.nanoTime() < deadline) {
+            List<BookItem> items = generateItems(random);
+            Predicate<List<BookItem>> fails = basket -> serviceDiscrepancy(service, oracle, basket) != null;
+            if (fails.test(items)) {
+                List<BookItem> minimal = shrink(items, DifferentialFuzzTest::smallerItems, fails);
+                fail("Seed %d, case %d: %s%n  minimal case: %s%n  %s".formatted(
+                        SEED, cases, items, minimal, serviceDiscrepancy(service, oracle, minimal)));
+            }
+            cases++;
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    //  PROPERTIES
+    // ----------------------------------------------------------------------
+
+    /**
+     * What is wrong with the engines' prices of 'basket', or null when they all agree.
+     */
+    private String discrepancy(Case basket) {
+        DiscountTable table = TABLES.get(basket.table());
+        BasketShape shape = basket.shape();
+        if (shape.counts().length == 0) {
+            return null;
+        }
+        Map<String, Long> prices = new LinkedHashMap<>();
+        for (Candidate candidate : candidates(table, shape)) {
+            if (candidate.cost().applyAsLong(shape) > candidate.maxCost()) {
+                continue;
+            }
+
+            SolveContext context = new SolveContext();
+            context.limit(DP_STATES, DP_TIME);
+            try {
+                prices.put(candidate.name(), table.minorUnits().toMinor(candidate.pricer().price(shape, context)));
+            } catch (NotApplicable ex) {
+                // the engine hands this shape to a fallback, which the harness does not give it
+            } catch (SolveBudgetExceededException ex) {
+                return "%s explored more than %d states or ran over %s".formatted(candidate.name(), DP_STATES, DP_TIME);
+            } catch (RuntimeException | StackOverflowError ex) {
+                return candidate.name() + " threw " + ex;
+            }
+        }
+        if (prices.values().stream().distinct().count() > 1) {
+            return "engines disagree (minor units): " + prices;
+        }
+        long greedy = table.minorUnits().toMinor(new GreedyPriceEngine(table).price(shape, SolveContext.NONE));
+        for (long exact : prices.values()) {
+            if (greedy < exact) {
+                return "greedy bound %d below the optimum %d".formatted(greedy, exact);
+            }
+        }
+        if (dpStates(shape) <= DP_STATES) {
+            SolveContext explaining = SolveContext.explaining();
+            double price = new HeterogeneousPriceEngine(table).price(shape, explaining);
+            double split = explaining.grouping().groups().stream().mapToDouble(group -> group.sets() * group.price()).sum();
+            if (Math.abs(split - price) > 1e-6) {
+                return "grouping %s adds up to %s, not %s".formatted(explaining.grouping(), split, price);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * What is wrong with the service's price of 'items', or null when it matches the oracle on the merged shape.
+     */
+    private static String serviceDiscrepancy(BookPriceService service, PricingEngine oracle, List<BookItem> items) {
+        Map<String, Integer> merged = new HashMap<>();
+        for (BookItem item : items) {
+            merged.merge(item.title().trim().toLowerCase(Locale.ROOT), item.quantity(), Integer::sum);
+        }
+        int[] counts = merged.values().stream().filter(quantity -> quantity > 0)
+                .sorted(Comparator.reverseOrder()).mapToInt(Integer::intValue).toArray();
+        try {
+            double price = service.calculatePrice(items);
+            if (counts.length == 0) {
+                return "priced a basket without books at " + price;
+            }
+            double expected = oracle.price(counts);
+            return price == expected ? null : "priced %s, expected %s for %s".formatted(price, expected, Arrays.toString(counts));
+        } catch (InvalidBasketException ex) {
+            return counts.length == 0 ? null : "refused " + Arrays.toString(counts) + ": " + ex.getMessage();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    //  ENGINES UNDER TEST
+    // ----------------------------------------------------------------------
+
+    private List<Candidate> candidates(DiscountTable table, BasketShape shape) {
+        List<Candidate> candidates = new ArrayList<>();
+        if (shape.hasUniformPrice()) {
+            DiscountTable priced = table.withBookPrice(shape.unitPrices()[0]);
+            candidates.addAll(uniformEngines.computeIfAbsent(TABLES.indexOf(table) + "@" + shape.unitPrices()[0],
+                    key -> uniformCandidates(priced)));
+        }
+        candidates.add(new Candidate("subsets", DifferentialFuzzTest::subsetStates, SUBSET_STATES,
+                new SubsetPriceEngine(table)::price));
+        for (CountsKey.Mode mode : CountsKey.Mode.values()) {
+            candidates.add(new Candidate("heterogeneous/" + mode, DifferentialFuzzTest::dpStates, DP_STATES,
+                    new HeterogeneousPriceEngine(table, mode)::price));
+        }
+        return candidates;
+    }
+
+    private static List<Candidate> uniformCandidates(DiscountTable table) {
+        List<Candidate> candidates = new ArrayList<>();
+        PricingEngine reference = new ReferencePriceEngine(table);
+        candidates.add(new Candidate("reference", DifferentialFuzzTest::referenceStates, REFERENCE_STATES,
+                (shape, context) -> reference.price(shape.counts(), context)));
+        for (CountsKey.Mode mode : CountsKey.Mode.values()) {
+            candidates.add(uniform("primitive/" + mode, DP_STATES, new PrimitivePriceEngine(table, mode)));
+        }
+        PricingEngine primitive = new PrimitivePriceEngine(table);
+        candidates.add(uniform("shape-cache", DP_STATES, new CachingPricingEngine(primitive, 1_000)));
+        candidates.add(uniform("group-histogram", Long.MAX_VALUE, new GroupHistogramEngine(table, NOT_APPLICABLE)));
+        if (table.hasKataDiscounts()) {
+            candidates.add(uniform("closed-form", Long.MAX_VALUE, new ClosedFormPriceEngine(table, NOT_APPLICABLE)));
+        }
+        candidates.add(uniform("lookup-table", Long.MAX_VALUE, new LookupTablePriceEngine(primitive, NOT_APPLICABLE, 4, 8)));
+        return candidates;
+    }
+
+    private static Candidate uniform(String name, long maxStates, PricingEngine engine) {
+        return new Candidate(name, DifferentialFuzzTest::dpStates, maxStates,
+                (shape, context) -> engine.price(shape.counts(), context));
+    }
+
+    /**
+     * Fallback of the engines under test: the shapes they do not price themselves are not compared.
+     */
+    private static final PricingEngine NOT_APPLICABLE = (counts, context) -> {
+        throw new NotApplicable();
+    };
+
+    private static final class NotApplicable extends RuntimeException {
+
+        NotApplicable() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Bound on the states of the sorted-counts DPs: the count vectors sorted inside each price class.
+     */
+    private static long sortedStates(BasketShape shape) {
+        Map<Double, int[]> classes = new HashMap<>();
+        for (int i = 0; i < shape.counts().length; i++) {
+            int[] titlesAndMax = classes.computeIfAbsent(shape.unitPrices()[i], price -> new int[2]);
+            titlesAndMax[0]++;
+            titlesAndMax[1] = Math.max(titlesAndMax[1], shape.counts()[i]);
+        }
+        long states = 1;
+        for (int[] titlesAndMax : classes.values()) {
+            states = saturatedProduct(states, binomial(titlesAndMax[1] + titlesAndMax[0], titlesAndMax[0]));
+        }
+        return states;
+    }
+
+    private static long referenceStates(BasketShape shape) {
+        return copies(shape) > REFERENCE_COPIES ? Long.MAX_VALUE : sortedStates(shape);
+    }
+
+    private static long dpStates(BasketShape shape) {
+        return sortedStates(shape);
+    }
+
+    private static long copies(BasketShape shape) {
+        return Arrays.stream(shape.counts()).asLongStream().sum();
+    }
+
+    /**
+     * States of the unpruned subset DP: every vector of remaining counts.
+     */
+    private static long subsetStates(BasketShape shape) {
+        long states = 1;
+        for (int count : shape.counts()) {
+            states = saturatedProduct(states, count + 1L);
+        }
+        return copies(shape) > SUBSET_COPIES ? Long.MAX_VALUE : states;
+    }
+
+    private static long binomial(int n, int k) {
+        long value = 1;
+        for (int i = 1; i <= k; i++) {
+            value = value * (n - k + i) / i;
+            if (value > Long.MAX_VALUE / (n + 1L)) {
+                return Long.MAX_VALUE;
+            }
+        }
+        return value;
+    }
+
+    private static long saturatedProduct(long a, long b) {
+        return a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+    }
+
+    // ----------------------------------------------------------------------
+    //  GENERATORS
+    // ----------------------------------------------------------------------
+
+    private static Case generate(Random random) {
+        int table = random.nextInt(TABLES.size());
+        return switch (random.nextInt(5)) {
+            // small baskets, zero quantities included
+            case 0 -> randomCase(random, table, 1 + random.nextInt(8), 7, random.nextBoolean() ? 1 : 3);
+            // k copies of the kata's 5 + 3 trap, slightly perturbed, next to a few other titles
+            case 1 -> {
+                int k = 1 + random.nextInt(6);
+                int[] trap = {2 * k, 2 * k, 2 * k, k, k};
+                int[] counts = IntStream.concat(Arrays.stream(trap), IntStream.generate(() -> random.nextInt(3))
+                                .limit(random.nextInt(3)))
+                        .map(count -> Math.max(0, count + random.nextInt(3) - 1))
+                        .toArray();
+                yield new Case(table, counts, levels(random, counts.length, 1));
+            }
+            // a few titles in large quantities
+            case 2 -> randomCase(random, table, 1 + random.nextInt(5), 5_000, 1);
+            // many titles, one or two copies each
+            case 3 -> randomCase(random, table, 8 + random.nextInt(7), 3, 1 + random.nextInt(3));
+            // equal quantities, prices whose discounted sums round differently per group
+            default -> {
+                int[] counts = new int[1 + random.nextInt(8)];
+                Arrays.fill(counts, 1 + random.nextInt(6));
+                yield new Case(table, counts, levels(random, counts.length, 2));
+            }
+        };
+    }
+
+    private static Case randomCase(Random random, int table, int titles, int maxCount, int priceLevels) {
+        int[] counts = new int[titles];
+        for (int i = 0; i < titles; i++) {
+            counts[i] = random.nextInt(maxCount);
+        }
+        return new Case(table, counts, levels(random, titles, priceLevels));
+    }
+
+    /**
+     * Unit prices drawn from 'levels' of the price levels (1 = every title at the same price).
+     */
+    private static double[] levels(Random random, int titles, int levels) {
+        double[] chosen = new double[levels];
+        for (int level = 0; level < levels; level++) {
+            chosen[level] = PRICE_LEVELS[random.nextInt(PRICE_LEVELS.length)];
+        }
+        double[] unitPrices = new double[titles];
+        for (int i = 0; i < titles; i++) {
+            unitPrices[i] = chosen[random.nextInt(levels)];
+        }
+        return unitPrices;
+    }
+
+    /**
+     * A basket of the kata titles, each line a title typed in a random case and padding, some repeated,
+     * some with zero copies, a few with thousands.
+     */
+    private static List<BookItem> generateItems(Random random) {
+        List<BookItem> items = new ArrayList<>();
+        int lines = 1 + random.nextInt(12);
+        for (int line = 0; line < lines; line++) {
+            String title = TITLES.get(random.nextInt(TITLES.size()));
+            String typed = switch (random.nextInt(4)) {
+                case 0 -> title.toUpperCase(Locale.ROOT);
+                case 1 -> title.toLowerCase(Locale.ROOT);
+                case 2 -> "  " + title + " ";
+                default -> title;
+            };
+            int quantity = switch (random.nextInt(6)) {
+                case 0 -> 0;
+                case 1 -> 100 + random.nextInt(5_000);
+                default -> 1 + random.nextInt(4);
+            };
+            items.add(new BookItem(typed, quantity));
+        }
+        return items;
+    }
+
+    // ----------------------------------------------------------------------
+    //  SHRINKING
+    // ----------------------------------------------------------------------
+
+    /**
+     * Repeatedly replaces 'failing' by the first of its smaller variants that still fails, until none does.
+     */
+    static <T> T shrink(T failing, Function<T, List<T>> smaller, Predicate<T> fails) {
+        T current = failing;
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (T candidate : smaller.apply(current)) {
+                if (fails.test(candidate)) {
+                    current = candidate;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static List<List<BookItem>> smallerItems(List<BookItem> items) {
+        List<List<BookItem>> smaller = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            List<BookItem> without = new ArrayList<>(items);
+            without.remove(i);
+            smaller.add(without);
+        }
+        for (int i = 0; i < items.size(); i++) {
+            BookItem item = items.get(i);
+            for (int quantity : lowered(item.quantity())) {
+                List<BookItem> lower = new ArrayList<>(items);
+                lower.set(i, new BookItem(item.title(), quantity));
+                smaller.add(lower);
+            }
+        }
+        return smaller;
+    }
+
+    /**
+     * Smaller quantities to try in place of 'quantity', most aggressive first.
+     */
+    private static int[] lowered(int quantity) {
+        return IntStream.of(0, quantity / 2, quantity - 1).filter(lower -> lower >= 0 && lower < quantity)
+                .distinct().toArray();
+    }
+
+    /**
+     * A basket as generated: counts (zeros allowed) and unit prices in no particular order, and a discount table.
+     */
+    private record Case(int table, int[] counts, double[] unitPrices) {
+
+        /**
+         * The canonical shape: positive counts sorted descending, ties by unit price descending.
+         */
+        BasketShape shape() {
+            Integer[] order = IntStream.range(0, counts.length).filter(i -> counts[i] > 0).boxed().toArray(Integer[]::new);
+            Arrays.sort(order, Comparator.<Integer>comparingInt(i -> counts[i])
+                    .thenComparingDouble(i -> unitPrices[i]).reversed());
+            return new BasketShape(Arrays.stream(order).mapToInt(i -> counts[i]).toArray(),
+                    Arrays.stream(order).mapToDouble(i -> unitPrices[i]).toArray());
+        }
+
+        List<Case> smaller() {
+            List<Case> smaller = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                smaller.add(new Case(table, remove(counts, i), remove(unitPrices, i)));
+            }
+            for (int i = 0; i < counts.length; i++) {
+                for (int count : lowered(counts[i])) {
+                    int[] lower = counts.clone();
+                    lower[i] = count;
+                    smaller.add(new Case(table, lower, unitPrices));
+                }
+            }
+            for (int i = 0; i < counts.length; i++) {
+                if (unitPrices[i] != unitPrices[0]) {
+                    double[] alike = unitPrices.clone();
+                    alike[i] = unitPrices[0];
+                    smaller.add(new Case(table, counts, alike));
+                }
+            }
+            return smaller;
+        }
+
+        private static int[] remove(int[] values, int index) {
+            return IntStream.range(0, values.length).filter(i -> i != index).map(i -> values[i]).toArray();
+        }
+
+        private static double[] remove(double[] values, int index) {
+            return IntStream.range(0, values.length).filter(i -> i != index).mapToDouble(i -> values[i]).toArray();
+        }
+
+        @Override
+        public String toString() {
+            return "%s @ %s, table %d".formatted(Arrays.toString(counts), Arrays.toString(unitPrices), table);
+        }
+    }
+
+    private record Candidate(String name, ToLongFunction<BasketShape> cost, long maxCost, Pricer pricer) {}
+
+    @FunctionalInterface
+    private interface Pricer {
+
+        double price(BasketShape shape, SolveContext context);
+    }
+}
@@ -0,0 +1,68 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GreedyPriceEngineTest {
+
+    private static final DiscountTable KATA_TABLE = new DiscountTable(50.0, DiscountTable.KATA_DISCOUNTS);
+
+    private final GreedyPriceEngine greedy = new GreedyPriceEngine(KATA_TABLE);
+    private final HeterogeneousPriceEngine exact = new HeterogeneousPriceEngine(KATA_TABLE);
+
+    @Test
+    @DisplayName("Never price below the optimum, and price an actual split of the basket")
+    void testUpperBoundOfTheOptimum() {
+        Random random = new Random(7);
+        double[] priceLevels = {20.0, 35.5, 50.0};
+        for (int round = 0; round < 300; round++) {
+            int titles = 1 + random.nextInt(6);
+            int[] counts = new int[titles];
+            double[] unitPrices = new double[titles];
+            for (int i = 0; i < titles; i++) {
+                counts[i] = 1 + random.nextInt(i == 0 ? 4 : counts[i - 1]);
+                unitPrices[i] = priceLevels[random.nextInt(priceLevels.length)];
+            }
+            BasketShape shape = new BasketShape(counts, unitPrices);
+            SolveContext context = SolveContext.explaining();
+            double approximate = greedy.price(shape, context);
+
+            assertTrue(approximate >= exact.price(shape, SolveContext.NONE) - 1e-9, shape::toString);
+            assertNotNull(context.grouping());
+            double split = context.grouping().groups().stream().mapToDouble(group -> group.sets() * group.price()).sum();
+            assertEquals(approximate, split, 1e-9, shape::toString);
+        }
+    }
+
+    @Test
+    @DisplayName("Price the kata basket as a group of five plus a group of three")
+    void testKataBasket() {
+        // the optimum is two groups of four (320.0)
+        assertEquals(187.5 + 135.0, greedy.price(new BasketShape(new int[]{2, 2, 2, 1, 1}, 50.0), SolveContext.NONE), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Abandon an exact solve once its context's state budget is spent")
+    void testStateBudget() {
+        SolveContext context = new SolveContext();
+        context.limit(10, Duration.ZERO);
+        PricingEngine primitive = new PrimitivePriceEngine(KATA_TABLE);
+
+        SolveBudgetExceededException ex = assertThrows(SolveBudgetExceededException.class,
+                () -> primitive.price(new int[]{8, 7, 6, 5, 4}, context));
+        assertEquals(11, ex.states());
+
+        SolveContext unbounded = new SolveContext();
+        unbounded.limit(0, Duration.ZERO);
+        assertEquals(new ReferencePriceEngine(KATA_TABLE).price(new int[]{8, 7, 6, 5, 4}),
+                primitive.price(new int[]{8, 7, 6, 5, 4}, unbounded), 1e-9);
+    }
+}
@@ -0,0 +1,81 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class GroupHistogramEngineTest {
+
+    private static final DiscountTable KATA_TABLE = new DiscountTable(50.0, DiscountTable.KATA_DISCOUNTS);
+
+    @Test
+    @DisplayName("Match the reference DP on every small shape with the kata table")
+    void testMatchesReferenceWithKataTable() {
+        PricingEngine reference = new ReferencePriceEngine(KATA_TABLE);
+        PricingEngine engine = new GroupHistogramEngine(KATA_TABLE, reference);
+        for (int[] shape : PrimitivePriceEngineTest.sortedShapes(6, 5)) {
+            assertEquals(reference.price(shape), engine.price(shape), 1e-9, () -> Arrays.toString(shape));
+        }
+    }
+
+    @Test
+    @DisplayName("Match the reference DP on random discount tables")
+    void testMatchesReferenceWithRandomTables() {
+        Random random = new Random(42);
+        List<int[]> shapes = PrimitivePriceEngineTest.sortedShapes(5, 5);
+        for (int round = 0; round < 100; round++) {
+            Map<Integer, Double> discounts = new HashMap<>();
+            int tableSize = 1 + random.nextInt(5);
+            for (int size = 1; size <= tableSize; size++) {
+                discounts.put(size, random.nextInt(40) / 100.0);
+            }
+            DiscountTable table = new DiscountTable(50.0, discounts);
+            PricingEngine reference = new ReferencePriceEngine(table);
+            PricingEngine engine = new GroupHistogramEngine(table, reference);
+            for (int i = 0; i < 40; i++) {
+                int[] shape = shapes.get(random.nextInt(shapes.size()));
+                assertEquals(reference.price(shape), engine.price(shape), 1e-9,
+                        () -> discounts + " " + Arrays.toString(shape));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Match the primitive DP on a medium basket with an irregular table")
+    void testMatchesPrimitiveOnMediumBasket() {
+        DiscountTable table = new DiscountTable(50.0, Map.of(2, 0.05, 3, 0.12, 4, 0.15, 5, 0.21));
+        int[] shape = {16, 13, 11, 7, 4};
+        PricingEngine engine = new GroupHistogramEngine(table, null);
+        assertEquals(new PrimitivePriceEngine(table).price(shape), engine.price(shape), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Price thousands of copies per title without recursion or quantity-sized state")
+    void testWholesaleQuantities() {
+        DiscountTable table = new DiscountTable(50.0, Map.of(2, 0.05, 3, 0.10, 4, 0.20, 5, 0.24));
+        PricingEngine engine = new GroupHistogramEngine(table, (counts, context) -> {
+            throw new AssertionError("fallback must not be used");
+        });
+        double price = assertTimeoutPreemptively(Duration.ofSeconds(1),
+                () -> engine.price(new int[]{2_000, 2_000, 2_000, 1_000, 1_000}));
+        // (4 + 4) = 320 beats (5 + 3) = 190 + 135 for each of the 1,000 kata-like pairs
+        assertEquals(1_000 * 320.0, price, 1e-6);
+    }
+
+    @Test
+    @DisplayName("Delegate tables with groups larger than five titles to the fallback engine")
+    void testWideTablesUseFallback() {
+        DiscountTable table = new DiscountTable(50.0, Map.of(6, 0.30));
+        PricingEngine engine = new GroupHistogramEngine(table, (counts, context) -> -1.0);
+        assertEquals(-1.0, engine.price(new int[]{1, 1, 1, 1, 1, 1}));
+    }
+}
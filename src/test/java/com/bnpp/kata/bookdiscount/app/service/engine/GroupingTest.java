@@ -0,0 +1,111 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GroupingTest {
+
+    private static final DiscountTable KATA_TABLE = new DiscountTable(50.0, DiscountTable.KATA_DISCOUNTS);
+    private static final DiscountTable OTHER_TABLE = new DiscountTable(50.0, Map.of(2, 0.05, 3, 0.12, 4, 0.15, 5, 0.21));
+
+    @Test
+    @DisplayName("Explain the kata example as two sets of four titles, whichever engine solves it")
+    void testKataExample() {
+        PricingEngine primitive = new PrimitivePriceEngine(KATA_TABLE);
+        List<PricingEngine> engines = List.of(
+                new ReferencePriceEngine(KATA_TABLE),
+                primitive,
+                new GroupHistogramEngine(KATA_TABLE, primitive),
+                new ClosedFormPriceEngine(KATA_TABLE, primitive),
+                new CachingPricingEngine(primitive, 100),
+                new LookupTablePriceEngine(primitive, primitive, 5, 4));
+        for (PricingEngine engine : engines) {
+            SolveContext context = SolveContext.explaining();
+            assertEquals(320.0, engine.price(new int[]{2, 2, 2, 1, 1}, context), 1e-9);
+            assertEquals(List.of(new Grouping.Group(4, 2, 200.0, 160.0)), context.grouping().groups(),
+                    engine.getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    @DisplayName("Record no grouping unless asked to")
+    void testNoGroupingByDefault() {
+        SolveContext context = new SolveContext();
+        new PrimitivePriceEngine(KATA_TABLE).price(new int[]{2, 1}, context);
+        assertNull(context.grouping());
+    }
+
+    @Test
+    @DisplayName("Explain every small uniform shape with groups adding up to its price and copies")
+    void testUniformGroupingsAddUp() {
+        for (DiscountTable table : List.of(KATA_TABLE, OTHER_TABLE)) {
+            PricingEngine reference = new ReferencePriceEngine(table);
+            PricingEngine primitive = new PrimitivePriceEngine(table);
+            List<PricingEngine> engines = List.of(reference, primitive, new GroupHistogramEngine(table, primitive));
+            for (int[] shape : PrimitivePriceEngineTest.sortedShapes(5, 4)) {
+                for (PricingEngine engine : engines) {
+                    SolveContext context = SolveContext.explaining();
+                    double price = engine.price(shape, context);
+                    assertAddsUp(context.grouping(), price, Arrays.stream(shape).sum(),
+                            Arrays.stream(shape).sum() * table.bookPrice(), Arrays.toString(shape));
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Explain mixed-price baskets with groups adding up to their price and list price")
+    void testMixedGroupingsAddUp() {
+        Random random = new Random(7);
+        double[] priceLevels = {20.0, 35.5, 50.0};
+        for (DiscountTable table : List.of(KATA_TABLE, OTHER_TABLE)) {
+            HeterogeneousPriceEngine engine = new HeterogeneousPriceEngine(table);
+            SubsetPriceEngine reference = new SubsetPriceEngine(table);
+            for (int round = 0; round < 200; round++) {
+                int titles = 1 + random.nextInt(6);
+                int[] counts = new int[titles];
+                double[] unitPrices = new double[titles];
+                double listPrice = 0.0;
+                for (int i = 0; i < titles; i++) {
+                    counts[i] = 1 + random.nextInt(3);
+                    unitPrices[i] = priceLevels[random.nextInt(priceLevels.length)];
+                    listPrice += counts[i] * unitPrices[i];
+                }
+                BasketShape shape = new BasketShape(counts, unitPrices);
+                int copies = Arrays.stream(counts).sum();
+
+                SolveContext pruned = SolveContext.explaining();
+                double price = engine.price(shape, pruned);
+                assertAddsUp(pruned.grouping(), price, copies, listPrice, shape.toString());
+
+                SolveContext subsets = SolveContext.explaining();
+                price = reference.price(shape, subsets);
+                assertAddsUp(subsets.grouping(), price, copies, listPrice, shape.toString());
+            }
+        }
+    }
+
+    private static void assertAddsUp(Grouping grouping, double price, long copies, double listPrice, String shape) {
+        assertNotNull(grouping, shape);
+        double groupedPrice = 0.0;
+        double groupedListPrice = 0.0;
+        long groupedCopies = 0;
+        for (Grouping.Group group : grouping.groups()) {
+            groupedPrice += group.sets() * group.price();
+            groupedListPrice += group.sets() * group.listPrice();
+            groupedCopies += group.sets() * group.titles();
+        }
+        assertEquals(price, groupedPrice, 1e-6, shape);
+        assertEquals(listPrice, groupedListPrice, 1e-6, shape);
+        assertEquals(copies, groupedCopies, shape);
+    }
+}
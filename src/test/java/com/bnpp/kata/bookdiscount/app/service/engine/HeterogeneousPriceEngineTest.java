@@ -0,0 +1,141 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeterogeneousPriceEngineTest {
+
+    private static final DiscountTable KATA_TABLE = new DiscountTable(50.0, DiscountTable.KATA_DISCOUNTS);
+
+    private final HeterogeneousPriceEngine engine = new HeterogeneousPriceEngine(KATA_TABLE);
+    private final SubsetPriceEngine reference = new SubsetPriceEngine(KATA_TABLE);
+
+    @Test
+    @DisplayName("Match the uniform engines when every title has the same price")
+    void testUniformPricesMatchPrimitiveEngine() {
+        PricingEngine primitive = new PrimitivePriceEngine(KATA_TABLE);
+        for (int[] counts : PrimitivePriceEngineTest.sortedShapes(5, 4)) {
+            BasketShape shape = new BasketShape(counts, 50.0);
+            assertEquals(primitive.price(counts), engine.price(shape, SolveContext.NONE), 1e-9, shape::toString);
+        }
+    }
+
+    @Test
+    @DisplayName("Match the unpruned subset DP on random baskets with a few price levels")
+    void testMatchesSubsetDp() {
+        Random random = new Random(42);
+        List<DiscountTable> tables = List.of(KATA_TABLE,
+                new DiscountTable(50.0, Map.of(2, 0.05, 3, 0.12, 4, 0.15, 5, 0.21)),
+                new DiscountTable(50.0, Map.of(2, 0.10, 3, 0.30)));
+        double[] priceLevels = {20.0, 35.5, 50.0};
+        for (DiscountTable table : tables) {
+            HeterogeneousPriceEngine tableEngine = new HeterogeneousPriceEngine(table);
+            SubsetPriceEngine tableReference = new SubsetPriceEngine(table);
+            for (int round = 0; round < 300; round++) {
+                int titles = 1 + random.nextInt(6);
+                int[] counts = new int[titles];
+                double[] unitPrices = new double[titles];
+                for (int i = 0; i < titles; i++) {
+                    counts[i] = 1 + random.nextInt(4);
+                    unitPrices[i] = priceLevels[random.nextInt(priceLevels.length)];
+                }
+                BasketShape shape = new BasketShape(counts, unitPrices);
+                assertEquals(tableReference.price(shape, SolveContext.NONE),
+                        tableEngine.price(shape, SolveContext.NONE), 1e-9, shape::toString);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Match the subset DP whatever the state key")
+    void testEveryKeyModeMatchesSubsetDp() {
+        Random random = new Random(20);
+        double[] priceLevels = {20.0, 35.5, 50.0};
+        for (CountsKey.Mode mode : CountsKey.Mode.values()) {
+            HeterogeneousPriceEngine keyed = new HeterogeneousPriceEngine(KATA_TABLE, mode);
+            for (int round = 0; round < 200; round++) {
+                int titles = 1 + random.nextInt(7);
+                int[] counts = new int[titles];
+                double[] unitPrices = new double[titles];
+                for (int i = 0; i < titles; i++) {
+                    counts[i] = 1 + random.nextInt(3);
+                    unitPrices[i] = priceLevels[random.nextInt(priceLevels.length)];
+                }
+                BasketShape shape = new BasketShape(counts, unitPrices);
+                assertEquals(reference.price(shape, SolveContext.NONE),
+                        keyed.price(shape, SolveContext.NONE), 1e-9, () -> mode + " " + shape);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Price two hundred titles at two prices exactly, in a few thousand states")
+    void testManyTitles() {
+        int[] counts = new int[200];
+        double[] unitPrices = new double[200];
+        double listPrice = 0.0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = i % 2 == 0 ? 2 : 1;
+            unitPrices[i] = i % 3 == 0 ? 40.0 : 20.0;
+            listPrice += counts[i] * unitPrices[i];
+        }
+        SolveContext context = new SolveContext();
+        // every copy fits in a group of five, and 25% off 20.0 or 40.0 needs no rounding
+        assertEquals(listPrice * 0.75, engine.price(new BasketShape(counts, unitPrices), context), 1e-9);
+        assertTrue(context.statesExplored() < 20_000, () -> context.statesExplored() + " states");
+    }
+
+    @Test
+    @DisplayName("Explore fewer states than the subset DP when titles share prices and counts")
+    void testSymmetricTitlesArePruned() {
+        int[] counts = {3, 3, 3, 2, 2, 2};
+        double[] unitPrices = {60.0, 60.0, 60.0, 40.0, 40.0, 40.0};
+        BasketShape shape = new BasketShape(counts, unitPrices);
+        SolveContext pruned = new SolveContext();
+        SolveContext subsets = new SolveContext();
+
+        assertEquals(reference.price(shape, subsets), engine.price(shape, pruned), 1e-9);
+        assertTrue(pruned.statesExplored() * 10 < subsets.statesExplored(),
+                () -> pruned.statesExplored() + " vs " + subsets.statesExplored());
+    }
+
+    @Test
+    @DisplayName("Group the expensive copies where the discount is largest")
+    void testMixedPrices() {
+        // {60, 50, 40} at 10% off plus a single 60 beats {60, 40} + {60, 50} at 5% off
+        BasketShape shape = new BasketShape(new int[]{2, 1, 1}, new double[]{60.0, 50.0, 40.0});
+        assertEquals(195.0, engine.price(shape, SolveContext.NONE), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Never form groups larger than the discount table")
+    void testGroupsAreCappedAtTableSize() {
+        double[] unitPrices = new double[7];
+        Arrays.fill(unitPrices, 10.0);
+        unitPrices[0] = 20.0;
+        int[] counts = new int[7];
+        Arrays.fill(counts, 1);
+        // best: the 20.0 title in the 25% group of five, the last two titles at 5% off
+        assertEquals((20.0 + 4 * 10.0) * 0.75 + 2 * 10.0 * 0.95,
+                engine.price(new BasketShape(counts, unitPrices), SolveContext.NONE), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Solve baskets of tens of thousands of groups without deepening the stack")
+    void testDeepBasketsOnShallowStack() throws InterruptedException {
+        BasketShape deep = new BasketShape(new int[]{50_000, 1}, new double[]{20.0, 35.5});
+        SolveContext context = SolveContext.explaining();
+        // the pair at 5% off: 52.725, rounded half-even to 52.72
+        assertEquals(49_999 * 20.0 + 52.72,
+                PrimitivePriceEngineTest.onShallowStack(() -> engine.price(deep, context)), 1e-9);
+        assertEquals(50_000L, context.grouping().groups().stream().mapToLong(group -> group.sets()).sum());
+    }
+}
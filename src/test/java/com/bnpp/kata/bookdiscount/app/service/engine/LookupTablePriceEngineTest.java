@@ -0,0 +1,53 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LookupTablePriceEngineTest {
+
+    private static final DiscountTable KATA_TABLE = new DiscountTable(50.0, DiscountTable.KATA_DISCOUNTS);
+
+    @Test
+    @DisplayName("Return exactly the solver's price for every shape within the bounds")
+    void testMatchesSolverWithinBounds() {
+        PricingEngine solver = new PrimitivePriceEngine(KATA_TABLE);
+        LookupTablePriceEngine engine = new LookupTablePriceEngine(solver, solver, 5, 8);
+        List<int[]> shapes = PrimitivePriceEngineTest.sortedShapes(5, 8);
+
+        // one slot per shape, plus the unused slot of the empty shape
+        assertEquals(shapes.size() + 1, engine.entries());
+        for (int[] shape : shapes) {
+            assertEquals(solver.price(shape), engine.price(shape), () -> Arrays.toString(shape));
+        }
+    }
+
+    @Test
+    @DisplayName("Send shapes with too many titles or copies to the fallback engine")
+    void testOutOfBoundsShapesFallBack() {
+        AtomicInteger fallbackCalls = new AtomicInteger();
+        PricingEngine fallback = (counts, context) -> {
+            fallbackCalls.incrementAndGet();
+            return -1.0;
+        };
+        LookupTablePriceEngine engine = new LookupTablePriceEngine(new PrimitivePriceEngine(KATA_TABLE), fallback, 3, 4);
+
+        assertEquals(135.0, engine.price(new int[]{1, 1, 1}));
+        assertEquals(-1.0, engine.price(new int[]{5, 1}));
+        assertEquals(-1.0, engine.price(new int[]{1, 1, 1, 1}));
+        assertEquals(2, fallbackCalls.get());
+    }
+
+    @Test
+    @DisplayName("Refuse bounds whose table would not fit in memory")
+    void testOversizedBoundsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new LookupTablePriceEngine(new PrimitivePriceEngine(KATA_TABLE), null, 40, 1_000));
+    }
+}
@@ -0,0 +1,70 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinorUnitsTest {
+
+    @Test
+    @DisplayName("Round divisions exactly like BigDecimal for every rounding mode")
+    void testDivideMatchesBigDecimal() {
+        Random random = new Random(3);
+        for (RoundingMode mode : RoundingMode.values()) {
+            if (mode == RoundingMode.UNNECESSARY) {
+                continue;
+            }
+            MinorUnits minorUnits = new MinorUnits(2, mode);
+            for (int round = 0; round < 10_000; round++) {
+                long value = random.nextLong(-2_000_000, 2_000_000);
+                long divisor = round % 2 == 0 ? 1_000_000 : random.nextLong(1, 1_000);
+                long expected = BigDecimal.valueOf(value).divide(BigDecimal.valueOf(divisor), 0, mode).longValueExact();
+                assertEquals(expected, minorUnits.divide(value, divisor), () -> mode + ": " + value + " / " + divisor);
+            }
+        }
+        assertThrows(ArithmeticException.class, () -> new MinorUnits(2, RoundingMode.UNNECESSARY).divide(3, 2));
+    }
+
+    @Test
+    @DisplayName("Round each discounted group once, to a minor unit, with the configured mode")
+    void testGroupPricesAreRoundedOnce() {
+        Map<Integer, Double> discounts = Map.of(2, 0.05);
+        DiscountTable halfEven = new DiscountTable(35.5, discounts, new MinorUnits(2, RoundingMode.HALF_EVEN));
+        DiscountTable halfUp = new DiscountTable(35.5, discounts, new MinorUnits(2, RoundingMode.HALF_UP));
+
+        // (35.50 + 20.00) * 0.95 = 52.725
+        assertEquals(5272, halfEven.groupPrice(5550, 2));
+        assertEquals(5273, halfUp.groupPrice(5550, 2));
+        // 2 * 35.50 * 0.95 = 67.45, no rounding needed
+        assertEquals(6745, halfEven.groupCost(2));
+        assertFalse(halfEven.hasKataDiscounts());
+    }
+
+    @Test
+    @DisplayName("Add up prices exactly, where summing doubles would drift")
+    void testPricesAreExactSums() {
+        DiscountTable table = new DiscountTable(0.1, Map.of(1, 0.0));
+        PricingEngine engine = new PrimitivePriceEngine(table);
+        // ten singles at 0.10: summing 0.1 ten times in double gives 0.9999999999999999
+        assertEquals(1.0, engine.price(new int[]{10}));
+        assertEquals(1.0, new ReferencePriceEngine(table).price(new int[]{10}));
+    }
+
+    @Test
+    @DisplayName("Tell amounts with at most 'scale' decimals apart")
+    void testIsExact() {
+        assertTrue(MinorUnits.DEFAULT.isExact(35.5));
+        assertTrue(MinorUnits.DEFAULT.isExact(19.99));
+        assertFalse(MinorUnits.DEFAULT.isExact(19.999));
+        assertThrows(IllegalArgumentException.class, () -> new DiscountTable(19.999, Map.of()));
+    }
+}
@@ -0,0 +1,132 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimitivePriceEngineTest {
+
+    private static final DiscountTable KATA_TABLE = new DiscountTable(50.0, Map.of(
+            1, 0.00,
+            2, 0.05,
+            3, 0.10,
+            4, 0.20,
+            5, 0.25
+    ));
+
+    private PricingEngine reference;
+    private PricingEngine engine;
+
+    @BeforeEach
+    void setup() {
+        reference = new ReferencePriceEngine(KATA_TABLE);
+        engine = new PrimitivePriceEngine(KATA_TABLE);
+    }
+
+    @Test
+    @DisplayName("Return exactly the reference price for every shape up to 5 titles and 6 copies")
+    void testMatchesReferenceOnAllSmallShapes() {
+        for (int[] shape : sortedShapes(5, 6)) {
+            assertEquals(reference.price(shape), engine.price(shape), () -> Arrays.toString(shape));
+        }
+    }
+
+    @Test
+    @DisplayName("Find the two groups of four for the kata example")
+    void testKataExample() {
+        assertEquals(320.0, engine.price(new int[]{2, 2, 2, 1, 1}));
+    }
+
+    @Test
+    @DisplayName("Return the reference price whatever the state key, up to groups of seven")
+    void testEveryKeyModeMatchesReference() {
+        DiscountTable sevenTitles = new DiscountTable(50.0, Map.of(2, 0.05, 3, 0.10, 4, 0.20, 5, 0.25, 6, 0.30, 7, 0.33));
+        PricingEngine sevenReference = new ReferencePriceEngine(sevenTitles);
+        for (CountsKey.Mode mode : CountsKey.Mode.values()) {
+            PricingEngine keyed = new PrimitivePriceEngine(KATA_TABLE, mode);
+            PricingEngine sevenKeyed = new PrimitivePriceEngine(sevenTitles, mode);
+            for (int[] shape : sortedShapes(5, 4)) {
+                assertEquals(reference.price(shape), keyed.price(shape), () -> mode + " " + Arrays.toString(shape));
+            }
+            for (int[] shape : sortedShapes(8, 2)) {
+                assertEquals(sevenReference.price(shape), sevenKeyed.price(shape), () -> mode + " " + Arrays.toString(shape));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Solve shapes too wide for one field per title through the count histogram")
+    void testWideShapes() {
+        int[] ones = new int[64];
+        Arrays.fill(ones, 1);
+        assertEquals(reference.price(ones), engine.price(ones));
+
+        int[] wide = new int[40];
+        Arrays.fill(wide, 0, 15, 3);
+        Arrays.fill(wide, 15, 40, 1);
+        SolveContext context = new SolveContext();
+        assertEquals(reference.price(wide), engine.price(wide, context));
+        assertTrue(context.statesExplored() < 2_000, () -> context.statesExplored() + " states");
+    }
+
+    @Test
+    @DisplayName("Solve baskets of tens of thousands of groups without deepening the stack")
+    void testDeepBasketsOnShallowStack() throws InterruptedException {
+        int[] deep = {50_000, 1};
+        SolveContext context = SolveContext.explaining();
+        assertEquals(49_999 * 50.0 + 95.0, onShallowStack(() -> engine.price(deep, context)));
+        assertEquals(50_000L, context.grouping().groups().stream().mapToLong(group -> group.sets()).sum());
+    }
+
+    /**
+     * Every non-empty, descending vector of at most 'maxTitles' counts in [1, maxCount].
+     */
+    static List<int[]> sortedShapes(int maxTitles, int maxCount) {
+        List<int[]> shapes = new ArrayList<>();
+        for (int titles = 1; titles <= maxTitles; titles++) {
+            collect(new int[titles], 0, maxCount, shapes);
+        }
+        return shapes;
+    }
+
+    private static void collect(int[] shape, int index, int ceiling, List<int[]> shapes) {
+        if (index == shape.length) {
+            shapes.add(shape.clone());
+            return;
+        }
+        for (int count = 1; count <= ceiling; count++) {
+            shape[index] = count;
+            collect(shape, index + 1, count, shapes);
+        }
+    }
+
+    /**
+     * Runs 'solve' on a thread whose stack is far too small for one frame per group.
+     */
+    static double onShallowStack(DoubleSupplier solve) throws InterruptedException {
+        double[] price = new double[1];
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                price[0] = solve.getAsDouble();
+            } catch (Throwable ex) {
+                failure[0] = ex;
+            }
+        }, "shallow-stack", 256 * 1024);
+        thread.start();
+        thread.join();
+        if (failure[0] != null) {
+            throw new AssertionError(failure[0]);
+        }
+        return price[0];
+    }
+}
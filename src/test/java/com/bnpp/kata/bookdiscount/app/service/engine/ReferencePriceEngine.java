@@ -0,0 +1,127 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * The original list based, recursive DP.
+ * Kept as the reference every faster engine is checked against.
+ */
+final class ReferencePriceEngine implements PricingEngine {
+
+    private final DiscountTable discountTable;
+    private final int maxGroupSize;
+
+    ReferencePriceEngine(DiscountTable discountTable) {
+        this.discountTable = discountTable;
+        this.maxGroupSize = Math.max(1, discountTable.maxGroupSize());
+    }
+
+    @Override
+    public double price(int[] sortedCounts, SolveContext context) {
+        List<Integer> counts = Arrays.stream(sortedCounts).boxed().toList();
+        Map<String, Double> cache = new HashMap<>();
+        double price = computeOptimalPrice(counts, cache, context);
+        context.addStatesExplored(cache.size());
+        if (context.explains()) {
+            context.recordGrouping(grouping(counts, price, cache));
+        }
+        return discountTable.minorUnits().toMajor(price);
+    }
+
+    /**
+     * Follows the memoized prices from the full basket: in each state, the group whose cost
+     * plus the cached price of what remains equals the state's price is the one kept.
+     */
+    private Grouping grouping(List<Integer> bookCounts, double price, Map<String, Double> cache) {
+        Grouping grouping = new Grouping();
+        List<Integer> state = normalizeCounts(bookCounts);
+        while (!state.isEmpty()) {
+            int largestGroup = Math.min(state.size(), maxGroupSize);
+            for (int groupSize = 1; groupSize <= largestGroup; groupSize++) {
+                List<Integer> next = normalizeCounts(applyGroupSelection(state, groupSize));
+                double rest = next.isEmpty() ? 0.0 : cache.get(next.toString());
+                if (discountTable.groupCost(groupSize) + rest == price) {
+                    grouping.addUniform(discountTable, groupSize, 1);
+                    state = next;
+                    price = rest;
+                    break;
+                }
+                if (groupSize == largestGroup) {
+                    throw new IllegalStateException("No cached choice explains price " + price);
+                }
+            }
+        }
+        return grouping;
+    }
+
+    /**
+     * Recursively computes the minimum possible total price, in minor units, by considering:
+     * - All possible groups of distinct books (1–5 titles)
+     * - Associated discounts
+     * - Remaining book counts after forming each group
+     * Memoization avoids re-solving duplicate subproblems.
+     */
+    private double computeOptimalPrice(List<Integer> bookCounts, Map<String, Double> cache, SolveContext context) {
+        List<Integer> normalized = normalizeCounts(bookCounts);
+        if (normalized.isEmpty()) {
+            return 0.0;
+        }
+        String key = normalized.toString();
+        if (cache.containsKey(key)) {
+            return cache.get(key);
+        }
+        context.charge();
+        double bestPrice = tryAllGroupSizes(normalized, cache, context);
+        cache.put(key, bestPrice);
+        return bestPrice;
+    }
+
+    private List<Integer> normalizeCounts(List<Integer> counts) {
+        return counts.stream()
+                .filter(count -> count > 0)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+    }
+
+    /**
+     * Tries group sizes from 1 to N distinct titles, N capped at the largest discounted
+     * group size (a larger group costs the same as its titles sold as singles), and
+     * returns the cheapest combination.
+     */
+    private double tryAllGroupSizes(List<Integer> state, Map<String, Double> cache, SolveContext context) {
+        return IntStream.rangeClosed(1, Math.min(state.size(), maxGroupSize))
+                .mapToDouble(size -> computeCostForGroup(size, state, cache, context))
+                .min()
+                .orElse(Double.MAX_VALUE);
+    }
+
+    /**
+     * Computes:
+     * - New state after forming a group of size 'groupSize'
+     * - Cost of that group based on discount rules
+     * - Total cost = group cost + recursive cost of remaining books
+     */
+    private double computeCostForGroup(int groupSize, List<Integer> state, Map<String, Double> cache,
+                                       SolveContext context) {
+        List<Integer> newState = applyGroupSelection(state, groupSize);
+        double groupCost = discountTable.groupCost(groupSize);
+        double recursiveCost = computeOptimalPrice(newState, cache, context);
+        return groupCost + recursiveCost;
+    }
+
+    /**
+     * Reduces count of the first 'groupSize' titles by 1,
+     * producing the next DP state.
+     */
+    private List<Integer> applyGroupSelection(List<Integer> state, int groupSize) {
+        return IntStream.range(0, state.size())
+                .map(i -> i < groupSize ? state.get(i) - 1 : state.get(i))
+                .boxed()
+                .toList();
+    }
+}
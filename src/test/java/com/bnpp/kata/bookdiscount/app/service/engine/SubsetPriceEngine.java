@@ -0,0 +1,162 @@
+package com.bnpp.kata.bookdiscount.app.service.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The plain DP over every subset of remaining titles, without the symmetry pruning of
+ * {@link HeterogeneousPriceEngine}: the reference its prices, groupings and state counts are checked against.
+ */
+final class SubsetPriceEngine {
+
+    private final DiscountTable discountTable;
+    private final int maxGroupSize;
+
+    SubsetPriceEngine(DiscountTable discountTable) {
+        this.discountTable = discountTable;
+        this.maxGroupSize = Math.max(1, discountTable.maxGroupSize());
+    }
+
+    double price(BasketShape shape, SolveContext context) {
+        long[] unitPrices = new long[shape.unitPrices().length];
+        for (int i = 0; i < unitPrices.length; i++) {
+            unitPrices[i] = discountTable.minorUnits().toMinor(shape.unitPrices()[i]);
+        }
+        SubsetSolver solver = new SubsetSolver(shape.counts().clone(), unitPrices, context);
+        double price = solver.solve();
+        context.addStatesExplored(solver.memo.size());
+        if (context.explains()) {
+            context.recordGrouping(solver.grouping(price));
+        }
+        return discountTable.minorUnits().toMajor(price);
+    }
+
+    /**
+     * Per-call scratch state of the subset DP: remaining copies per title and the memo table.
+     */
+    private final class SubsetSolver {
+
+        private final int[] state;
+        private final long[] unitPrices;
+        private final SolveContext context;
+        private final Map<String, Double> memo = new HashMap<>();
+
+        private SubsetSolver(int[] state, long[] unitPrices, SolveContext context) {
+            this.state = state;
+            this.unitPrices = unitPrices;
+            this.context = context;
+        }
+
+        private double solve() {
+            int first = firstRemaining();
+            if (first == state.length) {
+                return 0.0;
+            }
+            String key = Arrays.toString(state);
+            Double cached = memo.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            context.charge();
+            int[] group = new int[maxGroupSize];
+            group[0] = first;
+            double bestPrice = extendGroup(group, 1, first + 1, unitPrices[first]);
+            memo.put(key, bestPrice);
+            return bestPrice;
+        }
+
+        /**
+         * Replays the choices solve() kept from the current state, worth 'price', down to the
+         * empty basket. Leaves the state empty.
+         */
+        private Grouping grouping(double price) {
+            Grouping grouping = new Grouping();
+            int[] group = new int[maxGroupSize];
+            for (int first = firstRemaining(); first < state.length; first = firstRemaining()) {
+                group[0] = first;
+                price = findGroup(group, 1, first + 1, unitPrices[first], price, grouping);
+                if (Double.isNaN(price)) {
+                    throw new IllegalStateException("No memoized choice explains the basket price");
+                }
+            }
+            return grouping;
+        }
+
+        /**
+         * Walks the groups {@link #extendGroup} tries, in the same order, until one priced so
+         * that the rest costs 'target' minus its price. That group stays taken and is added to 'grouping'.
+         *
+         * @return the price of what remains, or NaN when no group from this point matches
+         */
+        private double findGroup(int[] group, int size, int from, long listPrice, double target,
+                                 Grouping grouping) {
+            for (int i = 0; i < size; i++) {
+                state[group[i]]--;
+            }
+            long groupPrice = discountTable.groupPrice(listPrice, size);
+            double rest = firstRemaining() == state.length ? 0.0 : memo.get(Arrays.toString(state));
+            if (groupPrice + rest == target) {
+                grouping.addMinor(discountTable, size, 1, listPrice, groupPrice);
+                return rest;
+            }
+            for (int i = 0; i < size; i++) {
+                state[group[i]]++;
+            }
+            if (size == maxGroupSize) {
+                return Double.NaN;
+            }
+            for (int title = from; title < state.length; title++) {
+                if (state[title] > 0) {
+                    group[size] = title;
+                    double found = findGroup(group, size + 1, title + 1, listPrice + unitPrices[title], target, grouping);
+                    if (!Double.isNaN(found)) {
+                        return found;
+                    }
+                }
+            }
+            return Double.NaN;
+        }
+
+        private int firstRemaining() {
+            int first = 0;
+            while (first < state.length && state[first] == 0) {
+                first++;
+            }
+            return first;
+        }
+
+        /**
+         * Cheapest price when the group under construction holds its first 'size' titles,
+         * worth 'listPrice' minor units, and further members are taken from index 'from' onwards.
+         */
+        private double extendGroup(int[] group, int size, int from, long listPrice) {
+            double bestPrice = closeGroup(group, size, listPrice);
+            if (size == maxGroupSize) {
+                return bestPrice;
+            }
+            for (int title = from; title < state.length; title++) {
+                if (state[title] > 0) {
+                    group[size] = title;
+                    bestPrice = Math.min(bestPrice, extendGroup(group, size + 1, title + 1, listPrice + unitPrices[title]));
+                }
+            }
+            return bestPrice;
+        }
+
+        /**
+         * Group cost plus the cheapest price of what remains,
+         * leaving the state exactly as it found it.
+         */
+        private double closeGroup(int[] group, int size, long listPrice) {
+            for (int i = 0; i < size; i++) {
+                state[group[i]]--;
+            }
+            double recursiveCost = solve();
+            for (int i = 0; i < size; i++) {
+                state[group[i]]++;
+            }
+            return discountTable.groupPrice(listPrice, size) + recursiveCost;
+        }
+    }
+}